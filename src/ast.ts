@@ -13,7 +13,8 @@ export enum Flags {
     Protected = 4,
     Constant = 8,
     Optional = 16,
-    Thrown = 32
+    Thrown = 32,
+    Text = 64
 }
 
 
@@ -52,6 +53,10 @@ export abstract class Declaration {
         return (this.flags & Flags.Protected) != 0;
     }
 
+    get isText(): boolean {
+        return (this.flags & Flags.Text) != 0;
+    }
+
     protected abstract gatherImports(indices: Set<{index: number, default: string} | undefined>): void;
 }
 
@@ -308,6 +313,9 @@ export class VoidType extends Type {
 export class DateType extends Type { 
 } 
 
+export class BinaryType extends Type { 
+} 
+
 export class ErrorType extends Type {
 }
 
@@ -325,3 +333,6 @@ export class BooleanType extends Type {
 
 export class ArrayType extends GenericType {
 }
+
+export class PromiseType extends GenericType {
+}
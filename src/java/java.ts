@@ -3,7 +3,7 @@ import {log} from "../log"
 import {decorate} from '../decorator';
 import {EmitterOptions} from "../emitter" 
 import {
-    Module, SourceFile, Type, GenericType, VoidType, AnyType, BooleanType, StringType, NumberType, ErrorType, ArrayType, Declaration, VariableDeclaration, NamespaceDeclaration, ClassDeclaration, InterfaceDeclaration, FunctionDeclaration, DeclaredType, ParameterDeclaration, ConstructorDeclaration, FunctionType, DateType, adopt
+    Module, SourceFile, Type, GenericType, VoidType, AnyType, BooleanType, StringType, NumberType, ErrorType, ArrayType, Declaration, VariableDeclaration, NamespaceDeclaration, ClassDeclaration, InterfaceDeclaration, FunctionDeclaration, DeclaredType, ParameterDeclaration, ConstructorDeclaration, FunctionType, DateType, BinaryType, PromiseType, adopt
 } from "../ast"
 
 export interface JavaOptions extends EmitterOptions {
@@ -22,6 +22,7 @@ declare module "../ast" {
     }
 
     interface VariableDeclaration {
+        field(indent?: string): string
         getter(indent?: string): string
         setter(indent?: string): string
     }
@@ -101,7 +102,7 @@ decorate(InterfaceDeclaration, ({prototype}) => prototype.keyword = function (th
 })
 
 decorate(VariableDeclaration, ({prototype}) => prototype.emit = function (this: VariableDeclaration, indent?: string): string {
-    return `
+    return `${this.field(indent)}
 ${indent}${this.parent instanceof InterfaceDeclaration ? '' : this.isProtected ? 'protected' : 'public'}${this.isStatic ? ' static' : ''} ${this.type.emit()} ${this.declarationName()}()${this.isAbstract ? ';' : ` ${this.getter(indent)}`}
     ${this.isConstant ? '' : `
 ${indent}${this.parent instanceof InterfaceDeclaration ? '' : this.isProtected ? 'protected' : 'public'}${this.isStatic ? ' static' : ''} void ${this.declarationName()}(${this.type.emit(false)} newValue)${this.isAbstract ? ';' : ` ${this.setter(indent)}`}
@@ -173,6 +174,15 @@ decorate(ArrayType, ({prototype}) => prototype.genericTypeName = function(this:
     return `List`;    
 })
 
+decorate(PromiseType, ({prototype}) => prototype.genericTypeName = function(this: PromiseType): string {
+    return `CompletableFuture`;    
+})
+
+decorate(PromiseType, ({prototype}) => prototype.typeName = function(this: PromiseType): string {
+    const value = this.typeArguments[0];
+    return `CompletableFuture<${!value || value instanceof VoidType ? 'Void' : value.emit()}>`;    
+})
+
 decorate(ErrorType, ({prototype}) => prototype.typeName = function(this: ErrorType): string {
     return 'Exception';  
 })
@@ -181,6 +191,10 @@ decorate(DateType, ({prototype}) => prototype.typeName = function(this: DateType
     return 'Date';  
 })
 
+decorate(BinaryType, ({prototype}) => prototype.typeName = function(this: BinaryType): string {
+    return 'ByteBuffer';  
+})
+
 decorate(FunctionType, ({prototype}) => prototype.typeName = function(this: FunctionType): string {
     let isVoid = this.signature.returnType instanceof VoidType;
     switch(this.signature.parameters.length) {
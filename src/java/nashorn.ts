@@ -4,17 +4,24 @@ import "./java"
 import {JavaOptions} from "./java"
 import {decorate} from '../decorator';
 
-import {Module, Type, VoidType, AnyType, ArrayType, Declaration, VariableDeclaration, ClassDeclaration, InterfaceDeclaration, FunctionDeclaration, DeclaredType, ConstructorDeclaration, FunctionType, NamespaceDeclaration} from "../ast"
+import {Module, Type, VoidType, AnyType, StringType, ArrayType, Declaration, VariableDeclaration, ClassDeclaration, InterfaceDeclaration, FunctionDeclaration, DeclaredType, ConstructorDeclaration, ParameterDeclaration, FunctionType, NamespaceDeclaration, PromiseType, BinaryType, GenericType} from "../ast"
 
 declare module "../ast" {
     interface Declaration {
         accessor(): string
         mirror(): string
+        engine(): string
+    }
+
+    interface VariableDeclaration {
+        isFrozen(): boolean
     }
 
     interface Type {
+        isConverted(): boolean;
         genericToNativeValue(optional?: boolean): string;
-        toNativeValue(): string;
+        toNativeValue(accessor?: string): string;
+        toEngineValue(value: string): string;
         fromNativeValue(): string;
         genericFromNativeValue(optional?: boolean): string;
     }
@@ -27,7 +34,9 @@ decorate(Module, ({prototype}) => prototype.emitWrapper = function (this: Module
 })
 
 decorate(InterfaceDeclaration, ({prototype}) => prototype.engineImports = function (this: InterfaceDeclaration) {      
-    return `import java.util.*;`
+    return `
+import java.nio.*;
+import java.util.*;`.substr(1)
 })
 
 decorate(InterfaceDeclaration, ({prototype}) => prototype.header = function (this: InterfaceDeclaration, indent?: string) {
@@ -40,48 +49,84 @@ decorate(InterfaceDeclaration, ({prototype}) => prototype.footer = function (thi
 
 decorate(Declaration, ({prototype}) => prototype.engineImports = function (this: Declaration) {
     return `
+import java.nio.*;
 import java.util.*;
 import java.util.function.*;
-import jdk.nashorn.api.scripting.*;${
-    this.sourceFile.isModuleFile ? '' : `\n
-import static io.xrails.${this.module.name.charAt(0).toUpperCase()}${this.module.name.slice(1)}.global;`
-    }`.substr(1);
+import java.util.concurrent.*;
+import jdk.nashorn.api.scripting.*;
+
+import static io.xrails.${this.module.name.charAt(0).toUpperCase()}${this.module.name.slice(1)}.Bundle.global;`.substr(1);
 })
 
 decorate(NamespaceDeclaration, ({prototype}) => prototype.header = function (this: NamespaceDeclaration, indent?: string) {
     return `
 ${!this.sourceFile.isModuleFile ? '' : `
-${indent}static final ScriptObjectMirror global = JS.eval("${this.module.sourcePath.base}");\n\n`.substr(1)
-}${!this.declarations.some(m => m.parent != m.sourceFile) ? '' : `
-${indent}private static final ScriptObjectMirror staticMirror = (ScriptObjectMirror)global.get("${this.name}");\n`.substr(1)
+${indent}static final class Bundle {
+${indent}    static final JS.Mirror global = JS.module("${this.module.sourcePath.base}");
+${indent}}
+
+${indent}public static JS.Batch batch() {
+${indent}    return new JS.Batch(global);
+${indent}}\n\n`.substr(1)
+}${!this.declarations.some(m => m.parent != m.sourceFile) && !(this instanceof ClassDeclaration && this.isThrown) ? '' : `
+${indent}private static final JS.Mirror staticMirror = global.mirror("${this.name}");\n`.substr(1)
+}${!(this instanceof ClassDeclaration && this.isThrown) ? '' : `
+${indent}static final JS.Thrown<${this.declarationName()}> thrown = new JS.Thrown<>(staticMirror, ${this.declarationName()}::new);\n`.substr(1)
 }${this instanceof InterfaceDeclaration || !this.declarations.some(m => !m.isStatic) ? '' : `
-${indent}private final ScriptObjectMirror prototype;
-${indent}private final JSObject mirror;
+${indent}private final JS.Engine engine = JS.Engine.current();
+${indent}private ScriptObjectMirror prototype;
+${indent}private JSObject mirror;
 
-${indent}${this.declarationName()}(ScriptObjectMirror mirror) { 
+${indent}${this.declarationName()}(ScriptObjectMirror mirror) { ${!(this instanceof ClassDeclaration && this.isThrown) ? '' : `
+${indent}    super(null, null, true, !JS.lightweightErrors);`}
 ${indent}    this.prototype = mirror; 
 ${indent}    this.mirror = mirror; 
 ${indent}    JS.heap.put(this, mirror);
 ${indent}}
+${!this.declarations.some(m => !m.isStatic && m.constructor.name === 'FunctionDeclaration') ? '' : `
+${indent}private static final class Methods {${this.declarations.filter((m, i, all) => !m.isStatic && m.constructor.name === 'FunctionDeclaration' && all.findIndex(o => o.name === m.name && o.constructor.name === 'FunctionDeclaration') == i).map(m => `
+${indent}    static final JS.Method ${m.declarationName()} = staticMirror.method("${m.name}");`).join('')}
+${indent}}
+`}
+${indent}private static final class Subclasses {
+${indent}    static final JS.Dispatch<${this.declarationName()}> dispatch = new JS.Dispatch<${this.declarationName()}>()${this.declarations.filter(m => !m.isStatic && m.constructor.name === 'FunctionDeclaration').map((m: FunctionDeclaration) => `
+${indent}            .method("${m.name}", (self, args) -> ${m.signature.returnType instanceof VoidType ? 
+                 `{ self.${m.declarationName()}(${m.signature.parameters.map((p, i) => `(${p.type.typeName()})args[${i}]`).join(', ')}); return null; }` : 
+                 `self.${m.declarationName()}(${m.signature.parameters.map((p, i) => `(${p.type.typeName()})args[${i}]`).join(', ')})`
+            })`).join('')};
+${indent}}
 
 `}`.substr(1);    
 })
 
+decorate(ClassDeclaration, ({prototype}) => {
+    const suffix = prototype.suffix;
+    prototype.suffix = function (this: ClassDeclaration): string {
+        return `${suffix.call(this)}${!this.declarations.some(m => !m.isStatic) ? '' : ' implements JS.Wrapper'}`;
+    };
+})
+
 decorate(ClassDeclaration, ({prototype}) => prototype.footer = function (this: ClassDeclaration, indent?: string) {
     return !this.declarations.some(m => !m.isStatic) ? '' : `
+${indent}@Override
+${indent}public void release() {
+${indent}    prototype = null;
+${indent}    mirror = null;
+${indent}}
+
 ${indent}@Override
 ${indent}public String toString() {
-${indent}    return mirror.toString();
+${indent}    return JS.live(mirror).toString();
 ${indent}}
 
 ${indent}@Override
 ${indent}public int hashCode() {
-${indent}    return mirror.hashCode();
+${indent}    return JS.live(mirror).hashCode();
 ${indent}}
 
 ${indent}@Override
 ${indent}public boolean equals(Object obj) {
-${indent}    return mirror.equals(JS.heap.getOrDefault(obj, obj));
+${indent}    return JS.live(mirror).equals(JS.heap.getOrDefault(obj, obj));
 ${indent}}`;
 })
 
@@ -89,12 +134,29 @@ decorate(Declaration, ({prototype}) => prototype.mirror = function (this: Declar
     return this.parent == this.sourceFile ? 'global' : this.isStatic ? 'staticMirror' : 'prototype';        
 })
 
+decorate(Declaration, ({prototype}) => prototype.engine = function (this: Declaration) {
+    const member = this instanceof ParameterDeclaration ? this.parent : this;
+    return member.mirror() == 'prototype' && !(member instanceof ConstructorDeclaration) ? 'engine' : 'JS.Engine.current()';
+})
+
 decorate(VariableDeclaration, ({prototype}) => prototype.accessor = function (this: VariableDeclaration) {
-    return `${this.mirror()}.get("${this.declarationName()}")`
+    return this.mirror() == 'prototype' ? `engine.get(prototype, "${this.declarationName()}")` : `${this.mirror()}.get("${this.declarationName()}")`
+})
+
+decorate(VariableDeclaration, ({prototype}) => prototype.isFrozen = function (this: VariableDeclaration) {
+    const freezable = (type: Type): boolean => type instanceof ArrayType ? freezable(type.typeArguments[0]) : 
+        !(type instanceof DeclaredType || type instanceof FunctionType || type instanceof BinaryType || type instanceof PromiseType);
+    return this.isConstant && !this.isAbstract && this.mirror() != 'prototype' && freezable(this.type);
+})
+
+decorate(VariableDeclaration, ({prototype}) => prototype.field = function (this: VariableDeclaration, indent?: string) {
+    return !this.isFrozen() ? '' : `
+${indent}private static final JS.Const<${this.type.emit()}> ${this.declarationName()} = new JS.Const<>(() -> ${this.type.isOptional ? `Optional.ofNullable(${this.type.toNativeValue()})` : this.type.toNativeValue()});
+`;
 })
 
 decorate(VariableDeclaration, ({prototype}) => prototype.getter = function (this: VariableDeclaration, indent?: string) {
-    let returnValue = this.type.isOptional ? `Optional.ofNullable(${this.type.toNativeValue()})` : this.type.toNativeValue();
+    let returnValue = this.isFrozen() ? `${this.declarationName()}.get()` : this.type.toEngineValue(this.type.isOptional ? `Optional.ofNullable(${this.type.toNativeValue()})` : this.type.toNativeValue());
     return `{
 ${indent}    return ${returnValue};
 ${indent}}`;        
@@ -102,33 +164,28 @@ ${indent}}`;
 
 decorate(VariableDeclaration, ({prototype}) => prototype.setter = function (this: VariableDeclaration, indent?: string) {
     return `{
-${indent}    ${this.mirror()}.setMember("${this.declarationName()}", ${this.type.fromNativeValue()});
+${indent}    ${this.mirror() == 'prototype' ? 'engine.setMember(prototype, ' : `${this.mirror()}.setMember(`}"${this.declarationName()}", ${this.type.fromNativeValue()});
 ${indent}}`;        
 })
 
 decorate(FunctionDeclaration, ({prototype}) => prototype.accessor = function (this: FunctionDeclaration): string {
     let args = this.signature.parameters.map(p => p.type.fromNativeValue());
-    return this.isStatic ? `${this.mirror()}.callMember(${[`"${this.declarationName()}"`, ...args].join(', ')})` : `((JSObject)prototype.getMember("${this.declarationName()}")).call(${[`mirror`, ...args].join(', ')})`;
+    return this.isStatic ? `${this.mirror()}.callMember(${[`"${this.declarationName()}"`, ...args].join(', ')})` : `engine.call(${[`Methods.${this.declarationName()}`, `prototype`, `mirror`, ...args].join(', ')})`;
 })
 
 decorate(FunctionDeclaration, ({prototype}) => prototype.body = function (this: FunctionDeclaration, indent?: string): string {
-    let body = `${indent}    ${this.signature.returnType instanceof VoidType ? this.accessor() : `return ${this.signature.returnType.toNativeValue()}`};`;
+    let body = `${indent}    ${this.signature.returnType instanceof VoidType ? this.accessor() : `return ${this.signature.returnType.toEngineValue(this.signature.returnType.toNativeValue())}`};`;
     let thrownDeclaredTypes: DeclaredType[] = this.signature.thrownTypes.filter(t => t instanceof DeclaredType) as DeclaredType[];
     if(thrownDeclaredTypes.length) {
         body = `
 ${indent}    try {
     ${body}
 ${indent}    } catch (NashornException e) {
-${indent}        ScriptObjectMirror mirror = (ScriptObjectMirror)e.getEcmaError();
-${indent}        Object constructor = mirror.get("constructor");
-${indent}        if(constructor instanceof ScriptObjectMirror) {
-${indent}            Object name = ((ScriptObjectMirror)constructor).get("name");
-${indent}            if(name instanceof String) switch ((String)name) {${
-                         thrownDeclaredTypes.reduce((out, type) => `
-${out}${indent}                case "${type.name!}":
-${indent}                    throw new ${type.typeName()}((ScriptObjectMirror)e.getEcmaError());`, '')}
-${indent}            }
-${indent}        }
+${indent}        Exception error = JS.translate(e, ${this.engine()}, ${thrownDeclaredTypes.map(type => `${type.typeName()}.thrown`).join(', ')});${
+                 thrownDeclaredTypes.map(type => `
+${indent}        if(error instanceof ${type.typeName()}) {
+${indent}            throw (${type.typeName()})error;
+${indent}        }`).join('')}
 ${indent}        throw e;
 ${indent}    }`; 
     }
@@ -137,49 +194,88 @@ ${body}
 ${indent}}`        
 })
 
+decorate(FunctionDeclaration, ({prototype}) => {
+    const emit = prototype.emit;
+    prototype.emit = function (this: FunctionDeclaration, indent?: string): string {
+        if(!this.isText || !this.isStatic || this.isAbstract || !(this.signature.returnType instanceof StringType) || this.signature.thrownTypes.length) {
+            return emit.call(this, indent);
+        }
+        return `${emit.call(this, indent)}
+${indent}public static JS.Text ${this.declarationName()}Text(${this.signature.parameters.map(p => p.emit()).join(', ')}) {
+${indent}    return ${this.mirror()}.text(${[`"${this.declarationName()}"`, ...this.signature.parameters.map(p => p.type.fromNativeValue())].join(', ')});
+${indent}}
+`;
+    }
+})
+
 decorate(ConstructorDeclaration, ({prototype}) => prototype.body = function (this: ConstructorDeclaration, indent?: string): string {
-    return `{
+    return `{${!(this.parent instanceof ClassDeclaration && this.parent.isThrown) ? '' : `
+${indent}    super(null, null, true, !JS.lightweightErrors);`}
 ${indent}    prototype = (ScriptObjectMirror)staticMirror.newObject(${this.signature.parameters.map(p => p.type.fromNativeValue()).join(', ')}); 
-${indent}    mirror = getClass() == ${this.parent.declarationName()}.class ? prototype : new JS.AbstractMirror(prototype) { 
-${indent}        @Override 
-${indent}        void build(BiConsumer<String, Function<Object[], Object>> builder) { 
-${this.parent.declarations.filter(m => !m.isStatic && m.constructor.name === 'FunctionDeclaration').map((m: FunctionDeclaration) => `
-${indent}            builder.accept("${m.name}", args -> ${m.signature.returnType instanceof VoidType ? 
-                     `{ ${m.declarationName()}(${m.signature.parameters.map((p, i) => `(${p.type.typeName()})args[${i}]`).join(', ')}); return null; }` : 
-                     `${m.declarationName()}(${m.signature.parameters.map((p, i) => `(${p.type.typeName()})args[${i}]`).join(', ')})`
-                });`).join('').substr(1)} 
-${indent}        } 
-${indent}    }; 
+${indent}    mirror = getClass() == ${this.parent.declarationName()}.class ? prototype : new JS.SubclassMirror<>(prototype, this, Subclasses.dispatch); 
 ${indent}    JS.heap.put(this, mirror); 
 ${indent}}`;        
 })
 
-decorate(FunctionType, ({prototype}) => prototype.toNativeValue = function(this: FunctionType) {
-    return `JS.wrap(${this.declaration.accessor()}, ${this.typeName()}.class)`;    
+decorate(Type, ({prototype}) => prototype.isConverted = function(this: Type) {
+    return false;
+})
+
+decorate(FunctionType, ({prototype}) => prototype.isConverted = function(this: FunctionType) {
+    return true;
+})
+
+decorate(AnyType, ({prototype}) => prototype.isConverted = function(this: AnyType) {
+    return true;
+})
+
+decorate(GenericType, ({prototype}) => prototype.isConverted = function(this: GenericType) {
+    return true;
+})
+
+decorate(BinaryType, ({prototype}) => prototype.isConverted = function(this: BinaryType) {
+    return true;
 })
 
-decorate(AnyType, ({prototype}) => prototype.toNativeValue = function(this: AnyType) {
-    return `JS.wrap(${this.declaration.accessor()}, JS.Object::new)`;    
+decorate(Type, ({prototype}) => prototype.toEngineValue = function(this: Type, value: string) {
+    return this.isConverted() && this.declaration.engine() == 'engine' ? `engine.execute(() -> ${value})` : value;
 })
 
-decorate(DeclaredType, ({prototype}) => prototype.toNativeValue = function(this: DeclaredType) {
-    return `JS.wrap(${this.declaration.accessor()}, ${this.typeName()}${this.isAbstract ? '.class' : '::new'})`;    
+decorate(FunctionType, ({prototype}) => prototype.toNativeValue = function(this: FunctionType, accessor: string = this.declaration.accessor()) {
+    return `JS.wrap(${accessor}, ${this.typeName()}.class)`;    
 })
 
-decorate(ArrayType, ({prototype}) => prototype.toNativeValue = function(this: ArrayType) {
-    return `JS.wrap(${this.declaration.accessor()}, ${this.typeArguments[0].genericToNativeValue()})`;    
+decorate(AnyType, ({prototype}) => prototype.toNativeValue = function(this: AnyType, accessor: string = this.declaration.accessor()) {
+    return `JS.<Object>wrap(${accessor}, JS.Object::new)`;    
 })
 
-decorate(Type, ({prototype}) => prototype.toNativeValue = function(this: Type) {
-    return `(${this.typeName()})${this.declaration.accessor()}`;    
+decorate(DeclaredType, ({prototype}) => prototype.toNativeValue = function(this: DeclaredType, accessor: string = this.declaration.accessor()) {
+    return `JS.wrap(${accessor}, ${this.typeName()}${this.isAbstract ? '.class' : '::new'})`;    
+})
+
+decorate(ArrayType, ({prototype}) => prototype.toNativeValue = function(this: ArrayType, accessor: string = this.declaration.accessor()) {
+    return `JS.wrap(${accessor}, ${this.typeArguments[0].genericToNativeValue()})`;    
+})
+
+decorate(BinaryType, ({prototype}) => prototype.toNativeValue = function(this: BinaryType, accessor: string = this.declaration.accessor()) {
+    return `JS.buffer(${accessor})`;    
+})
+
+decorate(PromiseType, ({prototype}) => prototype.toNativeValue = function(this: PromiseType, accessor: string = this.declaration.accessor()) {
+    const result = this.typeArguments[0];
+    return `JS.future(${accessor}, ${!result || result instanceof VoidType ? 'o -> null' : `o -> ${result.toNativeValue('o')}`})`;    
+})
+
+decorate(Type, ({prototype}) => prototype.toNativeValue = function(this: Type, accessor: string = this.declaration.accessor()) {
+    return `(${this.typeName()})${accessor}`;    
 })
 
 decorate(ArrayType, ({prototype}) => prototype.genericToNativeValue = function(this: ArrayType, optional: boolean = this.isOptional) {
-    return `o -> new JS.Array<>(o, ${this.typeArguments[0].genericToNativeValue()})`;    
+    return `o -> JS.array(o, ${this.typeArguments[0].genericToNativeValue()})`;    
 })
 
 decorate(Type, ({prototype}) => prototype.genericToNativeValue = function(this: Type, optional: boolean = this.isOptional) {
-    return `JS.Array::new`;    
+    return `JS::array`;    
 })
 
 decorate(Type, ({prototype}) => prototype.fromNativeValue = function(this: Type) {
@@ -187,7 +283,11 @@ decorate(Type, ({prototype}) => prototype.fromNativeValue = function(this: Type)
 })
 
 decorate(DeclaredType, ({prototype}) => prototype.fromNativeValue = function(this: DeclaredType) {
-    return this.isAbstract ? this.declaration.argumentName() : `JS.heap.get(${this.declaration.argumentName()})`;    
+    return this.isAbstract ? this.declaration.argumentName() : `JS.heap.get(${this.declaration.argumentName()}, ${this.declaration.engine()})`;    
+})
+
+decorate(BinaryType, ({prototype}) => prototype.fromNativeValue = function(this: BinaryType) {
+    return `JS.bytes(${this.declaration.argumentName()})`;    
 })
 
 decorate(ArrayType, ({prototype}) => prototype.fromNativeValue = function(this: ArrayType) {
@@ -4,7 +4,7 @@ import "./swift"
 import {SwiftOptions} from "./swift"
 import {decorate} from '../decorator';
 import {
-    Module, SourceFile, Type, VoidType, AnyType, ArrayType, Declaration, VariableDeclaration, ClassDeclaration, InterfaceDeclaration, FunctionDeclaration, DeclaredType, ParameterDeclaration, ConstructorDeclaration, FunctionType
+    Module, SourceFile, Type, VoidType, AnyType, ArrayType, Declaration, VariableDeclaration, ClassDeclaration, InterfaceDeclaration, FunctionDeclaration, DeclaredType, ParameterDeclaration, ConstructorDeclaration, FunctionType, PromiseType, BinaryType
 } from "../ast"
 
 
@@ -167,6 +167,14 @@ decorate(AnyType, ({prototype}) => prototype.toNativeValue = function(this: AnyT
     return !this.isOptional ? `${accessor}.infer()` : `Any?(${accessor}, wrapped: { $0.infer() })`;    
 })
 
+decorate(PromiseType, ({prototype}) => prototype.toNativeValue = function(this: PromiseType, accessor: string = this.declaration.accessor()) {
+    return AnyType.prototype.toNativeValue.call(this, accessor);    
+})
+
+decorate(BinaryType, ({prototype}) => prototype.toNativeValue = function(this: BinaryType, accessor: string = this.declaration.accessor()) {
+    return AnyType.prototype.toNativeValue.call(this, accessor);    
+})
+
 decorate(ArrayType, ({prototype}) => prototype.toNativeValue = function(this: ArrayType, accessor: string = this.declaration.accessor()) {
     return `${this.emit()}(${accessor}, ${this.isOptional ? `wrapped: ${this.genericToNativeValue(false)}` : `element: ${this.typeArguments[0].genericToNativeValue()}`})`
 })
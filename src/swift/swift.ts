@@ -3,7 +3,7 @@ import * as ast from "../ast"
 import {decorate} from '../decorator';
 import {EmitterOptions} from "../emitter" 
 import {
-    Module, Type, VoidType, AnyType, BooleanType, StringType, NumberType, ArrayType, VariableDeclaration, ClassDeclaration, InterfaceDeclaration, FunctionDeclaration, ParameterDeclaration, ConstructorDeclaration, FunctionType, DateType, NamespaceDeclaration
+    Module, Type, VoidType, AnyType, BooleanType, StringType, NumberType, ArrayType, VariableDeclaration, ClassDeclaration, InterfaceDeclaration, FunctionDeclaration, ParameterDeclaration, ConstructorDeclaration, FunctionType, DateType, BinaryType, NamespaceDeclaration, PromiseType
 } from "../ast"
 
 export interface SwiftOptions extends EmitterOptions {
@@ -126,6 +126,14 @@ decorate(VoidType, ({prototype}) => prototype.typeName = function(this: ast.Void
     return 'Void';  
 })
 
+decorate(PromiseType, ({prototype}) => prototype.typeName = function(this: ast.PromiseType): string {
+    return 'Any';  
+})
+
+decorate(BinaryType, ({prototype}) => prototype.typeName = function(this: ast.BinaryType): string {
+    return 'Any';  
+})
+
 decorate(ArrayType, ({prototype}) => prototype.typeName = function(this: ast.ArrayType): string {
     return `[${this.typeArguments[0].emit()}]`;    
 })
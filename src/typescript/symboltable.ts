@@ -167,9 +167,16 @@ export class SymbolTable implements NodeVisitor<void> {
                 return new ast.DateType(flags);
             case 'Error':
                 return new ast.ErrorType(flags);
+            case 'ArrayBuffer':
+            case 'Uint8Array':
+            case 'Int8Array':
+                return new ast.BinaryType(flags);
             case 'Array':
             case 'ReadonlyArray':
                 return new ast.ArrayType(flags, typeArguments.map((t, i) => this.createType(node, t, typeArgumentNodes[i])));
+            case 'Promise':
+            case 'PromiseLike':
+                return new ast.PromiseType(flags, typeArguments.map((t, i) => this.createType(node, t, typeArgumentNodes[i])));
             default:
                 const name = this.checker.symbolToString(symbol);
                 if(!this.exports.has(this.getDeclarations(symbol)[0])) {
@@ -46,4 +46,56 @@ class SpecialError {
  */
 function throwSpecialError(): void {
     throw new SpecialError("Special error message")
+}
+
+/**
+ * @param value: number
+ * @param delay: number
+ * @returns PromiseLike<number>
+ */
+function delayedNumber(value: number, delay: number): PromiseLike<number> {
+    return {
+        then: function (resolve: (value: number) => any, reject: (reason: any) => any): any {
+            setTimeout(function () {
+                value < 0 ? reject(new Error("Negative value")) : resolve(value)
+            }, delay)
+        }
+    }
+}
+
+/**
+ * @param text: string
+ * @param count: number
+ * @returns string
+ * @text
+ */
+function repeatedString(text: string, count: number): string {
+    let result = ""
+    for(let i = 0; i < count; i++) {
+        result += text
+    }
+    return result
+}
+
+/**
+ * @param bytes: Uint8Array
+ * @returns Uint8Array
+ */
+function invertedBytes(bytes: Uint8Array): Uint8Array {
+    for(let i = 0; i < bytes.length; i++) {
+        bytes[i] = 255 - bytes[i]
+    }
+    return bytes
+}
+
+/**
+ * @param count: number
+ * @returns Uint8Array
+ */
+function byteRange(count: number): Uint8Array {
+    const bytes = new Uint8Array(count + 2)
+    for(let i = 0; i < count; i++) {
+        bytes[i + 1] = i
+    }
+    return bytes.subarray(1, count + 1)
 }
\ No newline at end of file
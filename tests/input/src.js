@@ -141,6 +141,54 @@ var SpecialError = (function () {
 function throwSpecialError() {
     throw new SpecialError("Special error message");
 }
+/**
+ * @param value: number
+ * @param delay: number
+ * @returns PromiseLike<number>
+ */
+function delayedNumber(value, delay) {
+    return {
+        then: function (resolve, reject) {
+            setTimeout(function () {
+                value < 0 ? reject(new Error("Negative value")) : resolve(value);
+            }, delay);
+        }
+    };
+}
+/**
+ * @param text: string
+ * @param count: number
+ * @returns string
+ * @text
+ */
+function repeatedString(text, count) {
+    var result = "";
+    for (var i = 0; i < count; i++) {
+        result += text;
+    }
+    return result;
+}
+/**
+ * @param bytes: Uint8Array
+ * @returns Uint8Array
+ */
+function invertedBytes(bytes) {
+    for (var i = 0; i < bytes.length; i++) {
+        bytes[i] = 255 - bytes[i];
+    }
+    return bytes;
+}
+/**
+ * @param count: number
+ * @returns Uint8Array
+ */
+function byteRange(count) {
+    var bytes = new Uint8Array(count + 2);
+    for (var i = 0; i < count; i++) {
+        bytes[i + 1] = i;
+    }
+    return bytes.subarray(1, count + 1);
+}
 /**
  * Created by nbransby on 21/02/2016.
  */
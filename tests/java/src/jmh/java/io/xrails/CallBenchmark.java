@@ -0,0 +1,73 @@
+package io.xrails;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CallBenchmark {
+
+    private SimpleObject object;
+    private SimpleObject argument;
+    private SimpleInterface adapter;
+
+    @Setup
+    public void setUp() {
+        object = new SimpleObject(3);
+        argument = new SimpleObject(2);
+        adapter = Src.simpleInterfaceInstance();
+    }
+
+    @Benchmark
+    public void staticCall() {
+        SimpleObject.staticVoidNoArgMethod();
+    }
+
+    @Benchmark
+    public Object functionCall() {
+        return Src.numberMultipleArgFunction(1, 2);
+    }
+
+    @Benchmark
+    public Object instanceCall() {
+        return object.numberSingleObjectArgMethod(argument);
+    }
+
+    @Benchmark
+    public Object constructor() {
+        return new SimpleObject(1);
+    }
+
+    @Benchmark
+    public void interfaceCall() {
+        adapter.voidNoArgMethod();
+    }
+
+    @Benchmark
+    public Object lambdaCall() {
+        return Src.stringNoArgLambda().get();
+    }
+
+    @Benchmark
+    public Object separateCalls() {
+        Object result = null;
+        for(int i = 0; i < 10; i++) {
+            result = Src.numberMultipleArgFunction(i, 2);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Object batchedCalls() {
+        JS.Batch batch = Src.batch();
+        for(int i = 0; i < 10; i++) {
+            batch.call("numberMultipleArgFunction", i, 2);
+        }
+        return batch.run();
+    }
+}
@@ -0,0 +1,34 @@
+package io.xrails;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExceptionBenchmark {
+
+    @Benchmark
+    public Object simpleError() {
+        try {
+            Src.throwSimpleError();
+            return null;
+        } catch (Exception e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object specialError() {
+        try {
+            Src.throwSpecialError();
+            return null;
+        } catch (SpecialException e) {
+            return e;
+        }
+    }
+}
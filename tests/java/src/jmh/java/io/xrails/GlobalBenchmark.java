@@ -0,0 +1,41 @@
+package io.xrails;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GlobalBenchmark {
+
+    private int counter;
+
+    @Benchmark
+    public Object getConst() {
+        return Src.stringConst();
+    }
+
+    @Benchmark
+    public Object getVar() {
+        return Src.numberVar();
+    }
+
+    @Benchmark
+    public void setVar() {
+        Src.numberVar(counter++);
+    }
+
+    @Benchmark
+    public Object getObject() {
+        return Src.simpleObjectInstance();
+    }
+
+    @Benchmark
+    public Object getLambda() {
+        return Src.stringNoArgLambda();
+    }
+}
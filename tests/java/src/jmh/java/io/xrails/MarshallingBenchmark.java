@@ -0,0 +1,102 @@
+package io.xrails;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MarshallingBenchmark {
+
+    @Param({"10", "1000"})
+    private int size;
+
+    private List<Number> array;
+    private List<Number> list;
+    private double[] values;
+    private Map<String, Object> object;
+
+    @Setup
+    public void setUp() {
+        list = new ArrayList<>();
+        values = new double[size];
+        for(int i = 0; i < size; i++) {
+            list.add(i);
+            values[i] = i;
+        }
+        Src.numberArrayVar(JS.numbers(values));
+        array = Src.numberArrayVar();
+        object = (Map<String, Object>)Src.anyObjectInstance();
+    }
+
+    @Benchmark
+    public void arrayGet(Blackhole blackhole) {
+        for(int i = 0; i < array.size(); i++) {
+            blackhole.consume(array.get(i));
+        }
+    }
+
+    @Benchmark
+    public void arrayIterate(Blackhole blackhole) {
+        for(Number number : array) {
+            blackhole.consume(number);
+        }
+    }
+
+    @Benchmark
+    public Object arrayToArray() {
+        return array.toArray();
+    }
+
+    @Benchmark
+    public Object arrayDoubles() {
+        return JS.doubles(array);
+    }
+
+    @Benchmark
+    public Object arrayMirror() {
+        Src.numberArrayVar(list);
+        return Src.numberArrayVar().get(size - 1);
+    }
+
+    @Benchmark
+    public Object arrayNumbers() {
+        Src.numberArrayVar(JS.numbers(values));
+        return Src.numberArrayVar().get(size - 1);
+    }
+
+    @Benchmark
+    public Object objectGet() {
+        return object.get("value");
+    }
+
+    @Benchmark
+    public void objectIterate(Blackhole blackhole) {
+        ((JS.Object)object).invalidate();
+        for(Map.Entry<String, Object> entry : object.entrySet()) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void arrayClone(Blackhole blackhole) {
+        for(Object number : (List<?>)JS.clone(array)) {
+            blackhole.consume(number);
+        }
+    }
+
+    @Benchmark
+    public void objectClone(Blackhole blackhole) {
+        for(Map.Entry<?, ?> entry : ((Map<?, ?>)JS.clone(object)).entrySet()) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package io.xrails;
+
+import jdk.nashorn.api.scripting.JSObject;
+import jdk.nashorn.api.scripting.ScriptObjectMirror;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MethodCallBenchmark {
+
+    private SimpleObject object;
+    private SimpleObject argument;
+    private ScriptObjectMirror prototype;
+    private Object argumentMirror;
+
+    @Setup
+    public void setUp() {
+        object = new SimpleObject(3);
+        argument = new SimpleObject(2);
+        prototype = (ScriptObjectMirror)JS.heap.get(object);
+        argumentMirror = JS.heap.get(argument);
+    }
+
+    @Benchmark
+    public Object cachedMethod() {
+        return object.numberSingleObjectArgMethod(argument);
+    }
+
+    @Benchmark
+    public Object lookupPerCall() {
+        return ((JSObject)prototype.getMember("numberSingleObjectArgMethod")).call(prototype, argumentMirror);
+    }
+}
@@ -0,0 +1,46 @@
+package io.xrails;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SubclassBenchmark {
+
+    private SimpleObject object;
+    private SimpleObject subclass;
+
+    @Setup
+    public void setUp() {
+        object = new SimpleObject();
+        subclass = new SimpleObject() {
+            @Override
+            public void methodToOverride() {
+            }
+        };
+    }
+
+    @Benchmark
+    public void inherited() {
+        object.callOverriddenMethod();
+    }
+
+    @Benchmark
+    public void overridden() {
+        subclass.callOverriddenMethod();
+    }
+
+    @Benchmark
+    public Object subclassConstructor() {
+        return new SimpleObject() {
+            @Override
+            public void methodToOverride() {
+            }
+        };
+    }
+}
@@ -2,53 +2,1752 @@ package io.xrails;
 
 import jdk.nashorn.api.scripting.AbstractJSObject;
 import jdk.nashorn.api.scripting.JSObject;
+import jdk.nashorn.api.scripting.NashornException;
 import jdk.nashorn.api.scripting.NashornScriptEngineFactory;
 import jdk.nashorn.api.scripting.ScriptObjectMirror;
+import jdk.nashorn.api.scripting.ScriptUtils;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+public final class JS {
+
+    static final Heap heap = new Heap();
+
+    /**
+     * Whether generated bindings return arrays as immutable snapshots rather than live views, set with the system
+     * property {@code <package>.JS.snapshots}
+     */
+    static final boolean snapshots = Boolean.getBoolean(JS.class.getName() + ".snapshots");
+
+    /**
+     * Whether calls from generated bindings into the engine are counted and timed per member and published as MBeans,
+     * set with the system property {@code <package>.JS.metrics}
+     */
+    static final boolean metrics = Boolean.getBoolean(JS.class.getName() + ".metrics");
+
+    /**
+     * Whether each engine is confined to a thread of its own that runs the calls other threads queue to it, rather
+     * than calls locking the engine on the calling thread, set with the system property {@code <package>.JS.owned}
+     */
+    static final boolean owned = Boolean.getBoolean(JS.class.getName() + ".owned");
+
+    /**
+     * Whether exceptions translated from JS errors are created without a stack trace, for libraries that throw errors
+     * for control flow, set with the system property {@code <package>.JS.lightweightErrors}
+     */
+    public static final boolean lightweightErrors = Boolean.getBoolean(JS.class.getName() + ".lightweightErrors");
+
+    /**
+     * Seconds between log lines reporting the {@link #footprint()}, none are logged unless set with the system property
+     * {@code <package>.JS.footprintInterval}
+     */
+    static final long footprintInterval = Long.getLong(JS.class.getName() + ".footprintInterval", 0);
+
+    static {
+        if(footprintInterval > 0) {
+            Logger logger = Logger.getLogger(JS.class.getName());
+            Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "JS footprint");
+                thread.setDaemon(true);
+                return thread;
+            }).scheduleAtFixedRate(() -> logger.info(footprint().toString()), footprintInterval, footprintInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    private static final Map<String, Mirror> modules = new ConcurrentHashMap<>();
+
+    private static final Executor completions = ForkJoinPool.commonPool();
+
+    private static final Field arrayBufferBytes = arrayBufferBytes();
+
+    private static final ClassValue<Adapters> adapters = new ClassValue<Adapters>() {
+        @Override
+        protected Adapters computeValue(Class<?> type) {
+            return new Adapters(type);
+        }
+    };
+
+    private JS() {
+    }
+
+    static Mirror eval(String filename) {
+        Mirror module = module(filename);
+        Engine.current().evaluate(module);
+        return module;
+    }
+
+    /**
+     * The global of a bundle, evaluated in each engine the first time anything is resolved from it there
+     */
+    static Mirror module(String filename) {
+        return modules.computeIfAbsent(filename, Mirror::new);
+    }
+
+    /**
+     * Counts what the bridge is holding on to, walking the heap and asking each engine created so far for the size of
+     * its global
+     */
+    public static Footprint footprint() {
+        Map<String, Integer> wrappers = new TreeMap<>();
+        int entries = 0, stale = 0, arrayMirrors = 0;
+        for(Map.Entry<java.lang.Object, Heap.Value> entry : heap.entries.entrySet()) {
+            java.lang.Object key = ((Heap.Key)entry.getKey()).get();
+            java.lang.Object value = entry.getValue().get();
+            entries++;
+            if(key == null || value == null) {
+                stale++;
+                continue;
+            }
+            if(value instanceof ArrayMirror) {
+                arrayMirrors++;
+            }
+            wrappers.merge(key.getClass().getName(), 1, Integer::sum);
+        }
+        List<Integer> globals = new ArrayList<>();
+        for(int i = 0; i < Engine.pool.length(); i++) {
+            Engine engine = Engine.pool.get(i);
+            if(engine != null) {
+                globals.add(engine.globalProperties());
+            }
+        }
+        return new Footprint(entries, stale, arrayMirrors, wrappers, globals);
+    }
+
+    /**
+     * Opens a scope on the calling thread, wrappers created on it until the scope is closed have their mirrors released
+     * when it closes, or once the scope is collected if it is never closed. A released wrapper throws if it is used
+     */
+    public static Scope scope() {
+        return new Scope();
+    }
+
+    /**
+     * Evaluates a bundle in every engine of the pool that has not loaded it yet on a background thread, then runs the
+     * warm-up the number of times given against each engine so the JS it calls is compiled by the time the future
+     * completes. An engine already using the bundle keeps its state
+     */
+    public static CompletableFuture<Void> preload(String filename, Runnable warmUp, int iterations) {
+        CompletableFuture<Void> preloaded = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                Mirror module = module(filename);
+                for(int i = 0; i < Engine.pool.length(); i++) {
+                    Engine engine = Engine.get(i);
+                    Engine.current.set(engine);
+                    engine.resolve(module);
+                    for(int n = 0; n < iterations; n++) {
+                        warmUp.run();
+                    }
+                }
+                preloaded.complete(null);
+            } catch (Throwable e) {
+                preloaded.completeExceptionally(e);
+            }
+        }, "JS preload");
+        thread.setDaemon(true);
+        thread.start();
+        return preloaded;
+    }
+
+    public static CompletableFuture<Void> preload(String filename) {
+        return preload(filename, () -> {}, 0);
+    }
+
+    /**
+     * Exclusively leases an engine from the pool to the calling thread, preferring an idle one, until the lease is closed
+     */
+    public static Lease lease() {
+        return new Lease(Engine.acquire());
+    }
+
+    /**
+     * Creates a global of its own on the calling thread's engine, bundles are evaluated in it again but share the
+     * classes the engine has already compiled for them
+     */
+    public static Isolate isolate() {
+        return new Isolate(new Engine(Engine.current()));
+    }
+
+    static <E> List<E> array(ScriptObjectMirror mirror) {
+        Array<E> array = new Array<>(mirror);
+        return snapshots ? array.snapshot() : array;
+    }
+
+    static <E> List<E> array(ScriptObjectMirror mirror, Function<ScriptObjectMirror, E> e) {
+        Array<E> array = new Array<>(mirror, e);
+        return snapshots ? array.snapshot() : array;
+    }
+
+    /**
+     * The numbers in a list as primitives, an array from JS is converted in a single call without boxing its elements
+     */
+    public static double[] doubles(List<? extends Number> list) {
+        if(list instanceof DoubleArray) {
+            return ((DoubleArray)list).toDoubleArray();
+        }
+        if(list instanceof Array && !(list instanceof Snapshot)) {
+            Array<?> array = (Array<?>)list;
+            return array.engine.toDoubles(array.mirror);
+        }
+        double[] values = new double[list.size()];
+        int i = 0;
+        for(Number number : list) {
+            values[i++] = number.doubleValue();
+        }
+        return values;
+    }
+
+    /**
+     * A list of numbers backed by a copy of the primitives given, passed to JS it becomes an array created in a single
+     * call without boxing its elements
+     */
+    public static List<Number> numbers(double[] values) {
+        return new DoubleArray(values.clone());
+    }
+
+    /**
+     * The value of a const, read once by each engine each time its module is evaluated there and then returned by that
+     * engine without entering it. Only primitives, strings and arrays of them are kept, arrays as immutable snapshots
+     * that still pass back to JS as the original array. Values with a JS identity of their own are read on each access
+     */
+    static final class Const<T> {
+
+        private static final AtomicInteger count = new AtomicInteger();
+        private static final java.lang.Object LIVE = new java.lang.Object();
+
+        private final int index = count.getAndIncrement();
+        private final Supplier<T> read;
+
+        Const(Supplier<T> read) {
+            this.read = read;
+        }
+
+        T get() {
+            return Engine.current().constant(this);
+        }
+
+        private static java.lang.Object freeze(java.lang.Object value) {
+            if(value instanceof Optional) {
+                java.lang.Object frozen = freeze(((Optional<?>)value).orElse(null));
+                return frozen == LIVE ? LIVE : Optional.ofNullable(frozen);
+            }
+            if(value instanceof Array) {
+                Array<?> array = (Array<?>)value;
+                java.lang.Object[] values = array.toArray();
+                for(int i = 0; i < values.length; i++) {
+                    if((values[i] = freeze(values[i])) == LIVE) {
+                        return LIVE;
+                    }
+                }
+                return new Snapshot<>(array.mirror, values);
+            }
+            return value == null || value instanceof String || value instanceof Number || value instanceof Boolean ? value : LIVE;
+        }
+
+        private static final class Frozen {
+
+            final java.lang.Object value;
+
+            Frozen(java.lang.Object value) {
+                this.value = value;
+            }
+        }
+    }
+
+    /**
+     * A copy of a JS object or array as hash maps, array lists and primitives, built inside the engine in a single
+     * call so reading it makes no further crossings. Like JSON, functions and undefined properties are dropped,
+     * integral numbers come back as integers where they fit and a cyclic object throws {@link IllegalArgumentException}
+     */
+    public static java.lang.Object clone(java.lang.Object value) {
+        java.lang.Object mirror = heap.getOrDefault(value, value);
+        if(!(mirror instanceof ScriptObjectMirror)) {
+            return value;
+        }
+        return integers(Engine.current().copy((ScriptObjectMirror)mirror));
+    }
+
+    private static java.lang.Object integers(java.lang.Object value) {
+        if(value instanceof Double) {
+            double number = (Double)value;
+            return number == (int)number && (number != 0 || 1 / number > 0) ? (java.lang.Object)(int)number : value;
+        }
+        if(value instanceof List) {
+            for(ListIterator<java.lang.Object> elements = ((List<java.lang.Object>)value).listIterator(); elements.hasNext();) {
+                elements.set(integers(elements.next()));
+            }
+        } else if(value instanceof Map) {
+            for(Map.Entry<String, java.lang.Object> entry : ((Map<String, java.lang.Object>)value).entrySet()) {
+                entry.setValue(integers(entry.getValue()));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * A JS copy of a graph of maps, lists, arrays and primitives, created inside the engine in a single call and
+     * returned as a view like an {@code any} value, ready to pass back to JS. A cyclic graph throws
+     * {@link IllegalArgumentException}
+     */
+    public static java.lang.Object transfer(java.lang.Object value) {
+        return wrap(Engine.current().parse(Json.stringify(value)), mirror -> mirror.isArray() ? array(mirror) : new Object(mirror));
+    }
+
+    /**
+     * A JS object whose indexed properties are the bytes of the buffer between its position and limit, read and written
+     * in place by the engine. Like a typed array it has a length, and its buffer is returned to Java as a view of the
+     * same bytes
+     */
+    static JSObject bytes(ByteBuffer buffer) {
+        return buffer == null ? null : Engine.current().bytes(buffer);
+    }
+
+    /**
+     * A buffer over the bytes of a typed array or array buffer returned from JS, sharing its memory where the engine
+     * permits and copying them otherwise
+     */
+    static ByteBuffer buffer(java.lang.Object value) {
+        return value instanceof ScriptObjectMirror ? Engine.current().buffer((ScriptObjectMirror)value) : (ByteBuffer)value;
+    }
+
+    private static Field arrayBufferBytes() {
+        try {
+            Field field = Class.forName("jdk.nashorn.internal.objects.NativeArrayBuffer").getDeclaredField("nb");
+            field.setAccessible(true);
+            return field;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    static <T> T wrap(java.lang.Object object, Class type) {
+        return wrap(object, mirror -> (T)adapters.get(type).adapt(Engine.current(), mirror));
+    }
+
+    /**
+     * The mirror of a wrapper, which is null once the wrapper is released
+     */
+    static <T> T live(T mirror) {
+        if(mirror == null) {
+            throw new IllegalStateException("released");
+        }
+        return mirror;
+    }
+
+    static <T> T wrap(java.lang.Object object, Function<ScriptObjectMirror, T> constructor) {
+        if(object instanceof ScriptObjectMirror) {
+            object = constructor.apply((ScriptObjectMirror)object);
+        }
+        return (T)object;
+    }
+
+    /**
+     * The exception for the first of the types given whose constructor is the constructor of the error thrown by the
+     * engine given, or else the exception itself
+     */
+    static Exception translate(NashornException e, Engine engine, Thrown<?>... types) {
+        if(!(e.getEcmaError() instanceof ScriptObjectMirror)) {
+            return e;
+        }
+        ScriptObjectMirror error = (ScriptObjectMirror)e.getEcmaError();
+        return engine.execute(() -> {
+            java.lang.Object constructor = engine.get(error, "constructor");
+            for(Thrown<?> type : types) {
+                if(engine.resolve(type.constructor).equals(constructor)) {
+                    return Scope.outside(() -> type.exception.apply(error));
+                }
+            }
+            return e;
+        });
+    }
+
+    /**
+     * A JS error class declared as thrown and the constructor of the exception it is translated to
+     */
+    static final class Thrown<E extends Exception> {
+
+        private final Mirror constructor;
+        private final Function<ScriptObjectMirror, E> exception;
+
+        Thrown(Mirror constructor, Function<ScriptObjectMirror, E> exception) {
+            this.constructor = constructor;
+            this.exception = exception;
+        }
+    }
+
+    /**
+     * A future completed with the converted value of a thenable once it settles on the engine's event loop, or with the
+     * converted value itself if it is not a thenable. A thenable's value or rejection is converted on the engine but the
+     * future is completed on the common pool, so dependent stages never run holding the engine
+     */
+    static <T> CompletableFuture<T> future(java.lang.Object value, Function<java.lang.Object, T> converter) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            if(!(value instanceof ScriptObjectMirror) || !Engine.current().then((ScriptObjectMirror)value, result -> {
+                try {
+                    T converted = converter.apply(result);
+                    completions.execute(() -> future.complete(converted));
+                } catch (RuntimeException e) {
+                    completions.execute(() -> future.completeExceptionally(e));
+                }
+            }, reason -> {
+                RejectionException rejection = new RejectionException(reason);
+                completions.execute(() -> future.completeExceptionally(rejection));
+            })) {
+                future.complete(converter.apply(value));
+            }
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * The reason a thenable was rejected with, its message is the reason's {@code message} if it has one
+     */
+    public static final class RejectionException extends RuntimeException {
+
+        private final transient java.lang.Object reason;
+
+        RejectionException(java.lang.Object reason) {
+            super(reason instanceof ScriptObjectMirror && ((ScriptObjectMirror)reason).hasMember("message") ?
+                    String.valueOf(((ScriptObjectMirror)reason).getMember("message")) : String.valueOf(reason));
+            this.reason = reason;
+        }
+
+        public java.lang.Object reason() {
+            return reason;
+        }
+    }
+
+    /**
+     * A Nashorn engine with its own global, the pool size is set with the system property {@code <package>.JS.engines}
+     * and each thread is assigned an engine from the pool on first use. Calls are serialised on the engine so wrappers
+     * remain bound to, and safe to use with, the engine that created them from any thread. In owned mode they are run by
+     * a thread owning the engine instead of locking it, except for a thread holding a lease which calls it directly.
+     * The engine of an isolate has a global of its own but shares the Nashorn engine, lock and owner of the one it was
+     * created on
+     */
+    public static final class Engine {
+
+        private static final AtomicReferenceArray<Engine> pool = new AtomicReferenceArray<>(Math.max(1, Integer.getInteger(JS.class.getName() + ".engines", 1)));
+        private static final AtomicInteger assigned = new AtomicInteger();
+        private static final ThreadLocal<Engine> current = ThreadLocal.withInitial(() -> Engine.get(Math.floorMod(assigned.getAndIncrement(), pool.length())));
+
+        private final ScriptEngine engine;
+        private final ScriptContext context;
+        private final ReentrantLock lock;
+        private final List<Mirror> evaluated = new ArrayList<>();
+        private final Map<String, Map.Entry<String, CompiledScript>> compiled;
+        private final ScriptObjectMirror slice;
+        private final ScriptObjectMirror toDoubles;
+        private final ScriptObjectMirror fromDoubles;
+        private final ScriptObjectMirror hasOwn;
+        private final ScriptObjectMirror getOwn;
+        private final ScriptObjectMirror text;
+        private final ScriptObjectMirror substring;
+        private final ScriptObjectMirror bytes;
+        private final ScriptObjectMirror view;
+        private final ScriptObjectMirror copy;
+        private final ScriptObjectMirror parse;
+        private final ScriptObjectMirror global;
+        private final Map<Integer, ScheduledFuture<?>> timers = new HashMap<>();
+        private final Queue<JSObject> microtasks = new ArrayDeque<>();
+        private final Map<String, JSObject> batches = new LinkedHashMap<String, JSObject>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, JSObject> eldest) {
+                return size() > 256;
+            }
+        };
+        private volatile ScriptObjectMirror[] resolved = new ScriptObjectMirror[0];
+        private volatile Const.Frozen[] consts = new Const.Frozen[0];
+        private JSObject[][] dispatchers = new JSObject[0][];
+        private final BlockingQueue<Runnable> requests;
+        private ScheduledExecutorService loop;
+        private int timeouts;
+        private int depth;
+
+        private Engine() {
+            this(new NashornScriptEngineFactory().getScriptEngine(), null);
+        }
+
+        private Engine(Engine engine) {
+            this(engine.engine, engine);
+        }
+
+        private Engine(ScriptEngine engine, Engine shared) {
+            this.engine = engine;
+            if(shared == null) {
+                context = engine.getContext();
+                lock = new ReentrantLock();
+                compiled = new HashMap<>();
+                requests = owned ? new LinkedBlockingQueue<>() : null;
+            } else {
+                context = new SimpleScriptContext();
+                context.setBindings(engine.createBindings(), ScriptContext.ENGINE_SCOPE);
+                lock = shared.lock;
+                compiled = shared.compiled;
+                requests = shared.requests;
+            }
+            try {
+                slice = (ScriptObjectMirror)eval("(function(ObjectArray) { return function(array, from, to) { " +
+                        "if(to < 0) to = array.length; var values = new ObjectArray(Math.max(0, to - from)); " +
+                        "for(var i = from; i < to; i++) { var value = array[i]; values[i - from] = value === undefined ? null : value; } " +
+                        "return values; }; })(Java.type('java.lang.Object[]'))");
+                toDoubles = (ScriptObjectMirror)eval("(function(array) { return Java.to(array, 'double[]'); })");
+                fromDoubles = (ScriptObjectMirror)eval("(function(values) { return Java.from(values); })");
+                hasOwn = (ScriptObjectMirror)eval("(function(enumerable) { return function(object, key) { " +
+                        "return enumerable.call(object, key); }; })(Object.prototype.propertyIsEnumerable)");
+                getOwn = (ScriptObjectMirror)eval("(function(enumerable) { return function(object, key) { " +
+                        "return enumerable.call(object, key) ? object[key] : null; }; })(Object.prototype.propertyIsEnumerable)");
+                text = (ScriptObjectMirror)eval("(function(owner, name, args) { var value = owner[name].apply(owner, Java.from(args)); " +
+                        "if(value == null) return null; if(typeof value !== 'string') value = String(value); " +
+                        "return { value: value, length: value.length }; })");
+                substring = (ScriptObjectMirror)eval("(function(text, from, to) { return text.value.substring(from, to); })");
+                bytes = (ScriptObjectMirror)eval("(function(buffer) { var bytes = {}, length = buffer.capacity(); " +
+                        "Object.setIndexedPropertiesToExternalArrayData(bytes, buffer); " +
+                        "return Object.defineProperties(bytes, { length: { value: length }, byteLength: { value: length }, byteOffset: { value: 0 }, buffer: { value: buffer } }); })");
+                view = (ScriptObjectMirror)eval("(function(value, copy) { var buffer = value instanceof ArrayBuffer ? value : value.buffer, " +
+                        "offset = value.byteOffset || 0, length = value.byteLength === undefined ? value.length : value.byteLength; " +
+                        "if(buffer instanceof ArrayBuffer && copy) buffer = Java.to(new Int8Array(buffer, offset, length), 'byte[]'), offset = 0; " +
+                        "else if(!(buffer instanceof ArrayBuffer) && !Java.isJavaObject(buffer)) buffer = Java.to(value, 'byte[]'), offset = 0; " +
+                        "return Java.to([buffer, offset, length], 'java.lang.Object[]'); })");
+                copy = (ScriptObjectMirror)eval("(function(HashMap, ArrayList, IllegalArgumentException) { var path = []; return function copy(value) { " +
+                        "if(value === null || typeof value !== 'object') return typeof value === 'string' ? String(value) : typeof value === 'number' ? (isFinite(value) ? value : null) : typeof value === 'boolean' ? value : null; " +
+                        "if(path.indexOf(value) >= 0) { path.length = 0; throw new IllegalArgumentException('Cannot copy a cyclic object'); } path.push(value); " +
+                        "if(Array.isArray(value)) { var list = new ArrayList(value.length); for(var i = 0; i < value.length; i++) list.add(copy(value[i])); path.pop(); return list; } " +
+                        "var map = new HashMap(); for(var key in value) if(Object.prototype.hasOwnProperty.call(value, key) && value[key] !== undefined && typeof value[key] !== 'function') map.put(key, copy(value[key])); path.pop(); return map; }; " +
+                        "})(Java.type('java.util.HashMap'), Java.type('java.util.ArrayList'), Java.type('java.lang.IllegalArgumentException'))");
+                parse = (ScriptObjectMirror)eval("(function(parse) { return function(json) { return parse(json); }; })(JSON.parse)");
+                global = (ScriptObjectMirror)eval("this");
+            } catch (ScriptException e) {
+                throw new IllegalStateException(e);
+            }
+            global.setMember("setTimeout", function(args -> setTimeout((JSObject)args[0], args.length > 1 && args[1] instanceof Number ? ((Number)args[1]).longValue() : 0,
+                    args.length > 2 ? Arrays.copyOfRange(args, 2, args.length) : new java.lang.Object[0])));
+            global.setMember("clearTimeout", function(args -> clearTimeout(args.length > 0 ? args[0] : null)));
+            global.setMember("queueMicrotask", function(args -> queueMicrotask((JSObject)args[0])));
+            if(owned && shared == null) {
+                Thread owner = new Thread(this::own, "JS engine owner");
+                owner.setDaemon(true);
+                owner.start();
+            }
+        }
+
+        public static Engine current() {
+            return current.get();
+        }
+
+        private java.lang.Object eval(String script) throws ScriptException {
+            return engine.eval(script, context);
+        }
+
+        private static Engine get(int index) {
+            Engine engine = pool.get(index);
+            if(engine == null) {
+                synchronized (pool) {
+                    engine = pool.get(index);
+                    if(engine == null) {
+                        pool.set(index, engine = new Engine());
+                    }
+                }
+            }
+            return engine;
+        }
+
+        private static Engine acquire() {
+            int start = Math.floorMod(assigned.getAndIncrement(), pool.length());
+            for(int i = 0; i < pool.length(); i++) {
+                Engine engine = get((start + i) % pool.length());
+                if(engine.lock.tryLock()) {
+                    return engine;
+                }
+            }
+            Engine engine = current();
+            engine.lock.lock();
+            return engine;
+        }
+
+        /**
+         * Runs a call on the engine, under its lock on the calling thread or, if the engine is owned by a thread and
+         * the caller does not hold the engine, queued to the owner which runs the calls queued together in one batch
+         */
+        <T> T execute(Supplier<T> call) {
+            if(requests != null && !lock.isHeldByCurrentThread()) {
+                return submit(call);
+            }
+            Engine outer = enter();
+            try {
+                return call.get();
+            } finally {
+                exit(outer);
+            }
+        }
+
+        private <T> T submit(Supplier<T> call) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            Scope scope = Scope.current();
+            requests.add(() -> {
+                Reference<Scope> outer = Scope.current.get();
+                Scope.current.set(scope == null ? null : scope.self);
+                Engine engine = enter();
+                try {
+                    result.complete(call.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    exit(engine);
+                    Scope.current.set(outer);
+                }
+            });
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if(e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException)e.getCause();
+                }
+                if(e.getCause() instanceof Error) {
+                    throw (Error)e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        private void own() {
+            List<Runnable> batch = new ArrayList<>();
+            while(true) {
+                try {
+                    batch.add(requests.take());
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                requests.drainTo(batch);
+                Engine outer = enter();
+                try {
+                    for(Runnable request : batch) {
+                        request.run();
+                    }
+                } finally {
+                    exit(outer);
+                    batch.clear();
+                }
+            }
+        }
+
+        private Engine enter() {
+            lock.lock();
+            depth++;
+            Engine outer = current.get();
+            current.set(this);
+            return outer;
+        }
+
+        private void exit(Engine outer) {
+            try {
+                if(--depth == 0 && !microtasks.isEmpty()) {
+                    drain();
+                }
+            } finally {
+                current.set(outer);
+                lock.unlock();
+            }
+        }
+
+        private void evaluate(Mirror module) {
+            execute(() -> {
+                try {
+                    compile(Source.load(module.name)).eval(context);
+                } catch (ScriptException | IOException e) {
+                    throw new IllegalArgumentException(e);
+                }
+                resolved = new ScriptObjectMirror[0];
+                consts = new Const.Frozen[0];
+                if(!evaluated.contains(module)) {
+                    evaluated.add(module);
+                }
+                for(Mirror evaluated : evaluated) {
+                    store(evaluated, global);
+                }
+                return null;
+            });
+        }
+
+        private CompiledScript compile(Source source) throws ScriptException {
+            Map.Entry<String, CompiledScript> entry = compiled.get(source.filename);
+            if(entry == null || !entry.getKey().equals(source.hash)) {
+                entry = new AbstractMap.SimpleImmutableEntry<>(source.hash, ((Compilable)engine).compile(source.text));
+                compiled.put(source.filename, entry);
+            }
+            return entry.getValue();
+        }
+
+        private ScriptObjectMirror resolve(Mirror mirror) {
+            ScriptObjectMirror[] resolved = this.resolved;
+            if(mirror.index < resolved.length && resolved[mirror.index] != null) {
+                return resolved[mirror.index];
+            }
+            return execute(() -> {
+                ScriptObjectMirror[] current = this.resolved;
+                if(mirror.index < current.length && current[mirror.index] != null) {
+                    return current[mirror.index];
+                }
+                if(mirror.parent == null) {
+                    evaluate(mirror);
+                    return global;
+                }
+                return store(mirror, (ScriptObjectMirror)resolve(mirror.parent).get(mirror.name));
+            });
+        }
+
+        private ScriptObjectMirror store(Mirror mirror, ScriptObjectMirror value) {
+            ScriptObjectMirror[] resolved = this.resolved;
+            if(mirror.index >= resolved.length) {
+                resolved = Arrays.copyOf(resolved, Math.max(mirror.index + 1, resolved.length * 2));
+            } else {
+                resolved = resolved.clone();
+            }
+            resolved[mirror.index] = value;
+            this.resolved = resolved;
+            return value;
+        }
+
+        <T> T constant(Const<T> constant) {
+            Const.Frozen[] consts = this.consts;
+            if(constant.index < consts.length && consts[constant.index] != null) {
+                return (T)consts[constant.index].value;
+            }
+            return execute(() -> {
+                Const.Frozen[] current = this.consts;
+                if(constant.index < current.length && current[constant.index] != null) {
+                    return (T)current[constant.index].value;
+                }
+                T value = constant.read.get();
+                java.lang.Object frozen = Scope.outside(() -> Const.freeze(value));
+                if(frozen == Const.LIVE) {
+                    return value;
+                }
+                current = Arrays.copyOf(this.consts, Math.max(constant.index + 1, this.consts.length));
+                current[constant.index] = new Const.Frozen(frozen);
+                this.consts = current;
+                return (T)frozen;
+            });
+        }
+
+        java.lang.Object invoke(ScriptObjectMirror function, java.lang.Object thiz, java.lang.Object... args) {
+            return execute(() -> function.call(thiz, args));
+        }
+
+        /**
+         * The thread running this engine's timers and so completing the futures of its thenables, microtasks run as the
+         * outermost call into the engine returns on whichever thread made it
+         */
+        public Executor executor() {
+            return execute(() -> loop());
+        }
+
+        private ScheduledExecutorService loop() {
+            if(loop == null) {
+                loop = Executors.newSingleThreadScheduledExecutor(task -> {
+                    Thread thread = new Thread(task, "JS event loop");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return loop;
+        }
+
+        private java.lang.Object setTimeout(JSObject function, long delay, java.lang.Object[] args) {
+            int id = ++timeouts;
+            timers.put(id, loop().schedule(() -> run(() -> {
+                if(timers.remove(id) != null) {
+                    function.call(null, args);
+                }
+            }), Math.max(0, delay), TimeUnit.MILLISECONDS));
+            return id;
+        }
+
+        private java.lang.Object clearTimeout(java.lang.Object id) {
+            ScheduledFuture<?> timer = id instanceof Number ? timers.remove(((Number)id).intValue()) : null;
+            if(timer != null) {
+                timer.cancel(false);
+            }
+            return null;
+        }
+
+        private java.lang.Object queueMicrotask(JSObject function) {
+            microtasks.add(function);
+            return null;
+        }
+
+        private void run(Runnable task) {
+            try {
+                execute(() -> {
+                    task.run();
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                report(e);
+            }
+        }
+
+        private void drain() {
+            depth++;
+            try {
+                for(JSObject microtask; (microtask = microtasks.poll()) != null; ) {
+                    try {
+                        microtask.call(null);
+                    } catch (RuntimeException e) {
+                        report(e);
+                    }
+                }
+            } finally {
+                depth--;
+            }
+        }
+
+        private static void report(RuntimeException e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+
+        boolean then(ScriptObjectMirror object, Consumer<java.lang.Object> fulfilled, Consumer<java.lang.Object> rejected) {
+            return execute(() -> {
+                java.lang.Object then = object.getMember("then");
+                if(!(then instanceof ScriptObjectMirror) || !((ScriptObjectMirror)then).isFunction()) {
+                    return false;
+                }
+                ((ScriptObjectMirror)then).call(object, function(args -> {
+                    fulfilled.accept(argument(args));
+                    return null;
+                }), function(args -> {
+                    rejected.accept(argument(args));
+                    return null;
+                }));
+                return true;
+            });
+        }
+
+        private static java.lang.Object argument(java.lang.Object[] args) {
+            return args.length == 0 || ScriptObjectMirror.isUndefined(args[0]) ? null : args[0];
+        }
+
+        private static JSObject function(Function<java.lang.Object[], java.lang.Object> body) {
+            return new AbstractJSObject() {
+                @Override
+                public java.lang.Object call(java.lang.Object thiz, java.lang.Object... args) {
+                    return body.apply(args);
+                }
+
+                @Override
+                public boolean isFunction() {
+                    return true;
+                }
+            };
+        }
+
+        java.lang.Object get(ScriptObjectMirror object, String name) {
+            return execute(() -> live(object).get(name));
+        }
+
+        void setMember(ScriptObjectMirror object, String name, java.lang.Object value) {
+            execute(() -> {
+                live(object).setMember(name, value);
+                return null;
+            });
+        }
+
+        java.lang.Object callMember(ScriptObjectMirror object, String name, java.lang.Object... args) {
+            return execute(() -> object.callMember(name, args));
+        }
+
+        java.lang.Object call(Method method, ScriptObjectMirror object, JSObject thiz, java.lang.Object... args) {
+            return metrics ? method.metric.measure(() -> invoke(method, object, thiz, args)) : invoke(method, object, thiz, args);
+        }
+
+        private java.lang.Object invoke(Method method, ScriptObjectMirror object, JSObject thiz, java.lang.Object... args) {
+            java.lang.Object[] arguments = new java.lang.Object[args.length + 2];
+            arguments[0] = live(object);
+            arguments[1] = thiz;
+            System.arraycopy(args, 0, arguments, 2, args.length);
+            return execute(() -> dispatcher(method, args.length).call(null, arguments));
+        }
+
+        private JSObject dispatcher(Method method, int arity) {
+            if(method.index >= dispatchers.length) {
+                dispatchers = Arrays.copyOf(dispatchers, Math.max(method.index + 1, dispatchers.length * 2));
+            }
+            JSObject[] byArity = dispatchers[method.index];
+            if(byArity == null || arity >= byArity.length) {
+                dispatchers[method.index] = byArity = byArity == null ? new JSObject[arity + 1] : Arrays.copyOf(byArity, arity + 1);
+            }
+            if(byArity[arity] == null) {
+                String parameters = "";
+                for(int i = 0; i < arity; i++) {
+                    parameters += ", a" + i;
+                }
+                try {
+                    byArity[arity] = (JSObject)eval("(function(call) { return function(object, thiz" + parameters + ") { " +
+                            "return call.call(object." + method.name + ", thiz" + parameters + "); }; })(Function.prototype.call)");
+                } catch (ScriptException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return byArity[arity];
+        }
+
+        java.lang.Object newObject(ScriptObjectMirror object, java.lang.Object... args) {
+            return execute(() -> object.newObject(args));
+        }
+
+        java.lang.Object[] slice(JSObject array, int from, int to) {
+            return execute(() -> (java.lang.Object[])slice.call(null, array, from, to));
+        }
+
+        double[] toDoubles(JSObject array) {
+            return execute(() -> (double[])toDoubles.call(null, array));
+        }
+
+        java.lang.Object[] batch(ScriptObjectMirror global, String shape, Supplier<String> script, java.lang.Object[] args) {
+            return execute(() -> {
+                JSObject batch = batches.get(shape);
+                if(batch == null) {
+                    try {
+                        batches.put(shape, batch = (JSObject)eval(script.get()));
+                    } catch (ScriptException e) {
+                        throw new IllegalArgumentException(e);
+                    }
+                }
+                return (java.lang.Object[])batch.call(null, global, args);
+            });
+        }
+
+        Text text(ScriptObjectMirror owner, String name, java.lang.Object[] args) {
+            return execute(() -> {
+                JSObject text = (JSObject)this.text.call(null, owner, name, args);
+                return text == null ? null : new Text(this, text, 0, ((Number)text.getMember("length")).intValue());
+            });
+        }
+
+        java.lang.Object copy(ScriptObjectMirror value) {
+            return execute(() -> {
+                try {
+                    return copy.call(null, value);
+                } catch (NashornException e) {
+                    if(e.getEcmaError() instanceof IllegalArgumentException) {
+                        throw new IllegalArgumentException(((IllegalArgumentException)e.getEcmaError()).getMessage(), e);
+                    }
+                    throw e;
+                }
+            });
+        }
+
+        java.lang.Object parse(String json) {
+            return execute(() -> parse.call(null, json));
+        }
+
+        JSObject bytes(ByteBuffer buffer) {
+            return execute(() -> (JSObject)bytes.call(null, buffer.slice()));
+        }
+
+        ByteBuffer buffer(ScriptObjectMirror value) {
+            java.lang.Object[] view = execute(() -> (java.lang.Object[])this.view.call(null, value, arrayBufferBytes == null));
+            int offset = ((Number)view[1]).intValue(), length = ((Number)view[2]).intValue();
+            ByteBuffer buffer;
+            if(view[0] instanceof byte[]) {
+                buffer = ByteBuffer.wrap((byte[])view[0]);
+            } else if(view[0] instanceof ByteBuffer) {
+                buffer = ((ByteBuffer)view[0]).duplicate();
+            } else {
+                try {
+                    buffer = ((ByteBuffer)arrayBufferBytes.get(view[0])).duplicate();
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            buffer.clear().position(offset).limit(offset + length);
+            return buffer.slice();
+        }
+
+        int globalProperties() {
+            return execute(() -> global.getOwnKeys(true).length);
+        }
+
+        String substring(JSObject text, int from, int to) {
+            return execute(() -> (String)substring.call(null, text, from, to));
+        }
+
+        JSObject fromDoubles(double[] values) {
+            return execute(() -> (JSObject)fromDoubles.call(null, (java.lang.Object)values));
+        }
+
+        boolean hasOwn(ScriptObjectMirror object, String key) {
+            return execute(() -> (Boolean)hasOwn.call(null, object, key));
+        }
+
+        java.lang.Object getOwn(ScriptObjectMirror object, String key) {
+            return execute(() -> getOwn.call(null, object, key));
+        }
+
+        String[] keys(ScriptObjectMirror object) {
+            return execute(() -> object.getOwnKeys(false));
+        }
+
+        java.lang.Object getMember(JSObject object, String name) {
+            return execute(() -> object.getMember(name));
+        }
+    }
+
+    /**
+     * A sequence of gets, sets and calls on a bundle's global run together in a single script invocation. Names are
+     * paths from the global, like {@code SimpleObject.staticVoidNoArgMethod}, and calls are made on the object the
+     * function is a member of. Each engine compiles a script per sequence of operations and reuses it for batches of the
+     * same shape, so the property lookups in it are inline cached like those in any other script
+     */
+    public static final class Batch {
+
+        private final Mirror global;
+        private final StringBuilder shape = new StringBuilder();
+        private final List<String> names = new ArrayList<>();
+        private final List<Integer> arities = new ArrayList<>();
+        private final List<java.lang.Object> args = new ArrayList<>();
+
+        Batch(Mirror global) {
+            this.global = global;
+        }
+
+        public Batch get(String name) {
+            return add(name, -1);
+        }
+
+        public Batch set(String name, java.lang.Object value) {
+            args.add(value);
+            return add(name, -2);
+        }
+
+        public Batch call(String name, java.lang.Object... args) {
+            this.args.addAll(Arrays.asList(args));
+            return add(name, args.length);
+        }
+
+        private Batch add(String name, int arity) {
+            shape.append(arity).append(' ').append(name).append(';');
+            names.add(name);
+            arities.add(arity);
+            return this;
+        }
+
+        /**
+         * The value an argument is passed to the engine running the batch as, a wrapper created on another engine or
+         * released is rejected
+         */
+        private static java.lang.Object argument(java.lang.Object value, Engine engine) {
+            if(value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+                return value;
+            }
+            if(value instanceof Wrapper) {
+                return heap.get(value, engine);
+            }
+            java.lang.Object mirror = heap.get(value);
+            return mirror != null ? mirror : value instanceof List ? heap.computeIfAbsent(value, o -> new ArrayMirror<>((List<?>)o)) : value;
+        }
+
+        private String script() {
+            StringBuilder script = new StringBuilder("(function(ObjectArray) { return function(global, args) { var results = new ObjectArray(")
+                    .append(names.size()).append("), result;");
+            int arg = 0;
+            for(int i = 0; i < names.size(); i++) {
+                StringBuilder target = new StringBuilder("global");
+                for(String segment : names.get(i).split("\\.")) {
+                    target.append("[\"").append(segment.replace("\\", "\\\\").replace("\"", "\\\"")).append("\"]");
+                }
+                int arity = arities.get(i);
+                if(arity == -2) {
+                    script.append(' ').append(target).append(" = args[").append(arg++).append("]; results[").append(i).append("] = null;");
+                    continue;
+                }
+                if(arity >= 0) {
+                    target.append('(');
+                    for(int j = 0; j < arity; j++) {
+                        target.append(j == 0 ? "" : ", ").append("args[").append(arg++).append(']');
+                    }
+                    target.append(')');
+                }
+                script.append(" result = ").append(target).append("; results[").append(i).append("] = result === undefined ? null : result;");
+            }
+            return script.append(" return results; }; })(Java.type('java.lang.Object[]'))").toString();
+        }
+
+        /**
+         * Runs the batch, returning the result of each operation in order with null for sets. Arrays are returned as
+         * lists and other objects as maps
+         */
+        public List<java.lang.Object> run() {
+            Engine engine = Engine.current();
+            java.lang.Object[] arguments = new java.lang.Object[args.size()];
+            for(int i = 0; i < arguments.length; i++) {
+                arguments[i] = argument(args.get(i), engine);
+            }
+            java.lang.Object[] results = engine.batch(engine.resolve(global), shape.toString(), this::script, arguments);
+            for(int i = 0; i < results.length; i++) {
+                results[i] = wrap(results[i], mirror -> mirror.isArray() ? array(mirror) : mirror.isFunction() ? mirror : new Object(mirror));
+            }
+            return Arrays.asList(results);
+        }
+    }
+
+    /**
+     * Releases the mirrors of the wrappers created on a thread while it is open, a wrapper used once its scope is
+     * closed throws {@link IllegalStateException}. Scopes nest, each wrapper belonging to the innermost
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private static final ThreadLocal<Reference<Scope>> current = new ThreadLocal<>();
+
+        private final Reference<Scope> outer;
+        private final Reference<Scope> self = new WeakReference<>(this);
+        private final Heap.Release release;
+
+        private Scope() {
+            this.outer = current.get();
+            this.release = heap.release(this);
+            current.set(self);
+        }
+
+        static Scope current() {
+            Reference<Scope> scope = current.get();
+            return scope == null ? null : scope.get();
+        }
+
+        /**
+         * Runs a call whose wrappers outlive the current scope, like cached constants and thrown exceptions
+         */
+        static <T> T outside(Supplier<T> call) {
+            Reference<Scope> scope = current.get();
+            if(scope == null) {
+                return call.get();
+            }
+            current.remove();
+            try {
+                return call.get();
+            } finally {
+                current.set(scope);
+            }
+        }
+
+        @Override
+        public void close() {
+            heap.release(release);
+            current.set(outer);
+        }
+    }
+
+    /**
+     * A wrapper of a JS object, releasing it drops its mirror as closing the scope it was created in does
+     */
+    public interface Wrapper {
+
+        void release();
+    }
+
+    /**
+     * Holds an engine exclusively for the calling thread, generated classes use the leased engine until it is closed
+     */
+    public static final class Lease implements AutoCloseable {
+
+        private final Engine engine;
+        private final Engine outer;
+
+        private Lease(Engine engine) {
+            this.engine = engine;
+            this.outer = Engine.current.get();
+            Engine.current.set(engine);
+        }
+
+        public Engine engine() {
+            return engine;
+        }
+
+        @Override
+        public void close() {
+            Engine.current.set(outer);
+            engine.lock.unlock();
+        }
+    }
+
+    /**
+     * A global sharing an engine's thread, lock and compiled bundles with the globals of other isolates. Generated classes
+     * use it on a thread it is bound to, and wrappers created there stay bound to it
+     */
+    public static final class Isolate {
+
+        private final Engine engine;
+
+        private Isolate(Engine engine) {
+            this.engine = engine;
+        }
+
+        public Engine engine() {
+            return engine;
+        }
+
+        /**
+         * Binds the isolate to the calling thread until the binding is closed
+         */
+        public Binding bind() {
+            return new Binding(engine);
+        }
+    }
+
+    public static final class Binding implements AutoCloseable {
+
+        private final Engine outer;
+
+        private Binding(Engine engine) {
+            this.outer = Engine.current.get();
+            Engine.current.set(engine);
+        }
+
+        @Override
+        public void close() {
+            Engine.current.set(outer);
+        }
+    }
+
+    /**
+     * A named object in a bundle's global, resolved lazily and separately in each engine it is used from
+     */
+    static final class Mirror {
+
+        private static final AtomicInteger count = new AtomicInteger();
+
+        private final int index = count.getAndIncrement();
+        private final Mirror parent;
+        private final String name;
+        private final Map<String, Metric> measured = metrics ? new ConcurrentHashMap<>() : null;
+
+        private Mirror(String filename) {
+            this(null, filename);
+        }
+
+        private Mirror(Mirror parent, String name) {
+            this.parent = parent;
+            this.name = name;
+        }
+
+        Mirror mirror(String name) {
+            return new Mirror(this, name);
+        }
+
+        Method method(String name) {
+            return new Method(this, name);
+        }
+
+        java.lang.Object get(String name) {
+            Engine engine = Engine.current();
+            return metrics ? metric(name).measure(() -> engine.get(engine.resolve(this), name)) : engine.get(engine.resolve(this), name);
+        }
+
+        void setMember(String name, java.lang.Object value) {
+            Engine engine = Engine.current();
+            if(metrics) {
+                metric(name).measure(() -> {
+                    engine.setMember(engine.resolve(this), name, value);
+                    return null;
+                });
+            } else {
+                engine.setMember(engine.resolve(this), name, value);
+            }
+        }
+
+        java.lang.Object callMember(String name, java.lang.Object... args) {
+            Engine engine = Engine.current();
+            return metrics ? metric(name).measure(() -> engine.callMember(engine.resolve(this), name, args)) : engine.callMember(engine.resolve(this), name, args);
+        }
+
+        Text text(String name, java.lang.Object... args) {
+            Engine engine = Engine.current();
+            return metrics ? metric(name).measure(() -> engine.text(engine.resolve(this), name, args)) : engine.text(engine.resolve(this), name, args);
+        }
+
+        java.lang.Object newObject(java.lang.Object... args) {
+            Engine engine = Engine.current();
+            return metrics ? metric("new").measure(() -> engine.newObject(engine.resolve(this), args)) : engine.newObject(engine.resolve(this), args);
+        }
+
+        private Metric metric(String name) {
+            return measured.computeIfAbsent(name, member -> new Metric(this, member));
+        }
+
+        private String bundle() {
+            return parent == null ? name : parent.bundle();
+        }
+
+        private String path(String member) {
+            return parent == null ? member : parent.path(name) + "." + member;
+        }
+    }
+
+    /**
+     * An instance method of a generated class. Each engine calls it through a script function, one per arity, so the
+     * lookup of the method is inline cached by Nashorn and invalidated by it whenever the prototype chain changes
+     */
+    static final class Method {
+
+        private static final AtomicInteger count = new AtomicInteger();
+
+        private final int index = count.getAndIncrement();
+        private final String name;
+        private final Metric metric;
+
+        private Method(Mirror owner, String name) {
+            this.name = name;
+            this.metric = metrics ? new Metric(owner, "prototype." + name) : null;
+        }
+    }
+
+    /**
+     * Call statistics of a member of a bundle, registered as an MBean named after the bundle and the member
+     */
+    public interface MetricMXBean {
+
+        long getCalls();
+
+        long getErrors();
+
+        long getTotalNanos();
+
+        long getMaxNanos();
+
+        /**
+         * The number of calls by latency, the count at index {@code i} is of calls taking less than {@code 2^i} and at
+         * least {@code 2^(i-1)} nanoseconds
+         */
+        long[] getLatencyHistogram();
+    }
+
+    static final class Metric implements MetricMXBean {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray histogram = new AtomicLongArray(64);
+
+        private Metric(Mirror owner, String member) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(JS.class.getPackage().getName() +
+                        ":type=JS,bundle=" + ObjectName.quote(owner.bundle()) + ",name=" + ObjectName.quote(owner.path(member))));
+            } catch (InstanceAlreadyExistsException ignored) {
+            } catch (JMException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        <T> T measure(Supplier<T> call) {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                T result = call.get();
+                failed = false;
+                return result;
+            } finally {
+                long nanos = System.nanoTime() - start;
+                calls.increment();
+                if(failed) {
+                    errors.increment();
+                }
+                totalNanos.add(nanos);
+                maxNanos.accumulate(nanos);
+                histogram.incrementAndGet(Math.min(63, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos))));
+            }
+        }
+
+        @Override
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        @Override
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        @Override
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        @Override
+        public long[] getLatencyHistogram() {
+            long[] counts = new long[histogram.length()];
+            for(int i = 0; i < counts.length; i++) {
+                counts[i] = histogram.get(i);
+            }
+            return counts;
+        }
+    }
+
+    /**
+     * The text of a bundle, memory mapped from a file or else read from a classpath resource, decoded as UTF-8
+     */
+    static final class Source {
+
+        final String filename;
+        final String hash;
+        final String text;
+
+        private Source(String filename, ByteBuffer bytes) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(bytes.duplicate());
+                this.filename = filename;
+                this.hash = Base64.getEncoder().encodeToString(digest.digest());
+                this.text = StandardCharsets.UTF_8.decode(bytes).toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        static Source load(String filename) throws IOException {
+            Path path = Paths.get(filename);
+            if(Files.isRegularFile(path)) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    return new Source(filename, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                }
+            }
+            URL resource = JS.class.getClassLoader().getResource(filename.startsWith("/") ? filename.substring(1) : filename);
+            if(resource == null) {
+                throw new FileNotFoundException(filename);
+            }
+            try (InputStream in = resource.openStream()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                for(int read; (read = in.read(buffer)) != -1; ) {
+                    out.write(buffer, 0, read);
+                }
+                return new Source(filename, ByteBuffer.wrap(out.toByteArray()));
+            }
+        }
+    }
+
+    /**
+     * Concurrent identity map from Java objects to the mirrors that represent them in the engine. Keys and values are
+     * both weakly referenced, an entry lives as long as its value is reachable from the key or the engine so a value
+     * referencing its own key (like an {@link ArrayMirror} of a list) does not keep it alive. Stale entries are removed
+     * by a background thread as their references are enqueued, or all at once for the entries added in a scope
+     */
+    static final class Heap {
+
+        private final ConcurrentHashMap<java.lang.Object, Value> entries = new ConcurrentHashMap<>();
+        private final ReferenceQueue<java.lang.Object> queue = new ReferenceQueue<>();
+        private final Set<Release> releases = ConcurrentHashMap.newKeySet();
+
+        private Heap() {
+            Thread cleaner = new Thread(this::drain, "JS heap cleaner");
+            cleaner.setDaemon(true);
+            cleaner.start();
+        }
+
+        java.lang.Object get(java.lang.Object key) {
+            return getOrDefault(key, null);
+        }
 
-import javax.script.ScriptEngine;
-import javax.script.ScriptException;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.util.*;
-import java.util.function.BiConsumer;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+        /**
+         * The mirror of a wrapper passed to a call on the engine given, a wrapper created on another engine is rejected
+         * rather than having its mirror used without that engine's lock, and a released one rather than passed as null
+         */
+        java.lang.Object get(java.lang.Object key, Engine engine) {
+            if(key == null) {
+                return null;
+            }
+            Value value = entries.get(new Lookup(key));
+            java.lang.Object object = value == null ? null : value.get();
+            if(object == null) {
+                throw new IllegalStateException(key.getClass().getName() + " released");
+            }
+            if(value.engine != engine) {
+                throw new IllegalArgumentException(key.getClass().getName() + " belongs to another engine");
+            }
+            return object;
+        }
 
-class JS {
+        java.lang.Object getOrDefault(java.lang.Object key, java.lang.Object defaultValue) {
+            if(key == null) {
+                return defaultValue;
+            }
+            Value value = entries.get(new Lookup(key));
+            java.lang.Object object = value == null ? null : value.get();
+            return object == null ? defaultValue : object;
+        }
 
-    private static final ScriptEngine engine = new NashornScriptEngineFactory().getScriptEngine();
-    private static final ScriptObjectMirror wrapper;
+        void put(java.lang.Object key, java.lang.Object value) {
+            if(key == null) {
+                return;
+            }
+            if(value == null) {
+                entries.remove(new Lookup(key));
+                return;
+            }
+            Key reference = new Key(key, queue);
+            entries.put(reference, new Value(reference, value, Engine.current(), queue));
+            track(reference);
+        }
 
-    static final Map<java.lang.Object, java.lang.Object> heap = new WeakHashMap<>();
+        java.lang.Object computeIfAbsent(java.lang.Object key, Function<java.lang.Object, java.lang.Object> mapping) {
+            if(key == null) {
+                return null;
+            }
+            java.lang.Object object = get(key);
+            if(object == null) {
+                object = mapping.apply(key);
+                Key reference = new Key(key, queue);
+                Value value = new Value(reference, object, Engine.current(), queue);
+                for(Value existing; (existing = entries.putIfAbsent(reference, value)) != null; ) {
+                    java.lang.Object current = existing.get();
+                    if(current != null) {
+                        return current;
+                    }
+                    if(entries.replace(reference, existing, value)) {
+                        break;
+                    }
+                }
+                track(reference);
+            }
+            return object;
+        }
 
-    static {
-        try {
-            heap.put(null, null);
-            wrapper = (ScriptObjectMirror)engine.eval(
-                    "function(name, obj) { var Type = Java.type(name); return new Type(obj); }");
-        } catch (ScriptException e) {
-            throw new IllegalStateException(e);
+        private void track(Key reference) {
+            Scope scope = Scope.current();
+            if(scope != null) {
+                scope.release.keys.add(reference);
+            }
         }
-    }
 
-    static ScriptObjectMirror eval(String filename) {
-        try {
-            engine.eval(new FileReader(filename));
-            return (ScriptObjectMirror)engine.eval("this");
-        } catch (ScriptException | FileNotFoundException e) {
-            throw new IllegalArgumentException(e);
+        Release release(Scope scope) {
+            Release release = new Release(scope, queue);
+            releases.add(release);
+            return release;
         }
-    }
 
-    static <T> T wrap(java.lang.Object object, Class type) {
-        return wrap(object, mirror -> (T)wrapper.call(null, type.getName(), mirror));
+        void release(Release release) {
+            if(releases.remove(release)) {
+                release.clear();
+                for(Key key : release.keys) {
+                    java.lang.Object wrapper = key.get();
+                    if(wrapper instanceof Wrapper) {
+                        ((Wrapper)wrapper).release();
+                    }
+                    entries.remove(key);
+                }
+            }
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        private void drain() {
+            while(true) {
+                try {
+                    Reference<?> reference = queue.remove();
+                    if(reference instanceof Key) {
+                        entries.remove(reference);
+                    } else if(reference instanceof Release) {
+                        release((Release)reference);
+                    } else {
+                        entries.remove(((Value)reference).key, reference);
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }
+
+        static final class Key extends WeakReference<java.lang.Object> {
+
+            private final int hash;
+
+            Key(java.lang.Object referent, ReferenceQueue<java.lang.Object> queue) {
+                super(referent, queue);
+                this.hash = System.identityHashCode(referent);
+            }
+
+            @Override
+            public int hashCode() {
+                return hash;
+            }
+
+            @Override
+            public boolean equals(java.lang.Object obj) {
+                if(this == obj) {
+                    return true;
+                }
+                java.lang.Object referent = get();
+                return referent != null && obj instanceof Key && referent == ((Key)obj).get();
+            }
+        }
+
+        private static final class Lookup {
+
+            private final java.lang.Object referent;
+
+            Lookup(java.lang.Object referent) {
+                this.referent = referent;
+            }
+
+            @Override
+            public int hashCode() {
+                return System.identityHashCode(referent);
+            }
+
+            @Override
+            public boolean equals(java.lang.Object obj) {
+                return obj instanceof Key && referent == ((Key)obj).get();
+            }
+        }
+
+        static final class Release extends PhantomReference<java.lang.Object> {
+
+            private final List<Key> keys = new ArrayList<>();
+
+            Release(Scope scope, ReferenceQueue<java.lang.Object> queue) {
+                super(scope, queue);
+            }
+        }
+
+        static final class Value extends WeakReference<java.lang.Object> {
+
+            private final Key key;
+            private final Engine engine;
+
+            Value(Key key, java.lang.Object referent, Engine engine, ReferenceQueue<java.lang.Object> queue) {
+                super(referent, queue);
+                this.key = key;
+                this.engine = engine;
+            }
+        }
     }
 
-    static <T> T wrap(java.lang.Object object, Function<ScriptObjectMirror, T> constructor) {
-        if(object instanceof ScriptObjectMirror) {
-            object = constructor.apply((ScriptObjectMirror)object);
+    /**
+     * Counts of the wrappers and mirrors the bridge holds, taken by {@link JS#footprint()}
+     */
+    public static final class Footprint {
+
+        private final int entries;
+        private final int stale;
+        private final int arrayMirrors;
+        private final Map<String, Integer> wrappers;
+        private final List<Integer> globals;
+
+        private Footprint(int entries, int stale, int arrayMirrors, Map<String, Integer> wrappers, List<Integer> globals) {
+            this.entries = entries;
+            this.stale = stale;
+            this.arrayMirrors = arrayMirrors;
+            this.wrappers = Collections.unmodifiableMap(wrappers);
+            this.globals = Collections.unmodifiableList(globals);
+        }
+
+        /**
+         * Entries in the map from Java objects to their mirrors, including stale ones
+         */
+        public int heapEntries() {
+            return entries;
+        }
+
+        /**
+         * Entries whose object or mirror has been collected but the cleaner has not yet removed
+         */
+        public int staleEntries() {
+            return stale;
+        }
+
+        /**
+         * Java lists passed to JS that are still mirrored as arrays
+         */
+        public int arrayMirrors() {
+            return arrayMirrors;
+        }
+
+        /**
+         * Live objects with a mirror in the heap by class name, generated wrappers, views of JS arrays and objects, and
+         * Java lists passed to JS
+         */
+        public Map<String, Integer> wrappers() {
+            return wrappers;
+        }
+
+        /**
+         * Own properties of the global of each engine created so far, in pool order
+         */
+        public List<Integer> globalProperties() {
+            return globals;
+        }
+
+        @Override
+        public String toString() {
+            return "JS heap " + entries + " entries (" + stale + " stale, " + arrayMirrors + " array mirrors), wrappers " + wrappers + ", global properties " + globals;
         }
-        return (T)object;
     }
 
     static class ArrayMirror<E> extends AbstractJSObject implements List<E> {
@@ -218,9 +1917,10 @@ class JS {
 
     }
 
-    static class Array<E> extends AbstractList<E> {
+    public static class Array<E> extends AbstractList<E> implements Wrapper {
 
-        private final JSObject mirror;
+        private final Engine engine = Engine.current();
+        private JSObject mirror;
         private final Function<java.lang.Object, E> e;
 
         Array(JSObject mirror) {
@@ -237,85 +1937,527 @@ class JS {
 
         @Override
         public E get(int index) {
-            return e.apply(mirror.getSlot(index));
+            return engine.execute(() -> e.apply(live(mirror).getSlot(index)));
         }
 
         @Override
         public int size() {
-            return ((Number)mirror.getMember("length")).intValue();
+            return ((Number)engine.getMember(live(mirror), "length")).intValue();
+        }
+
+        @Override
+        public java.lang.Object[] toArray() {
+            return engine.execute(() -> {
+                java.lang.Object[] values = engine.slice(live(mirror), 0, -1);
+                for(int i = 0; i < values.length; i++) {
+                    values[i] = e.apply(values[i]);
+                }
+                return values;
+            });
+        }
+
+        @Override
+        public <T> T[] toArray(T[] a) {
+            java.lang.Object[] values = toArray();
+            if(a.length < values.length) {
+                return (T[])Arrays.copyOf(values, values.length, a.getClass());
+            }
+            System.arraycopy(values, 0, a, 0, values.length);
+            if(a.length > values.length) {
+                a[values.length] = null;
+            }
+            return a;
+        }
+
+        /**
+         * Copies the elements into the array given, pulling them across from the engine in a single call
+         */
+        public void copyInto(java.lang.Object[] destination) {
+            java.lang.Object[] values = toArray();
+            System.arraycopy(values, 0, destination, 0, values.length);
+        }
+
+        @Override
+        public void forEach(Consumer<? super E> action) {
+            for(java.lang.Object value : toArray()) {
+                action.accept((E)value);
+            }
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return Arrays.asList((E[])toArray()).iterator();
+        }
+
+        /**
+         * Splits by index range without entering the engine and copies the elements of each part out a slice at a time,
+         * so a parallel stream works through one slice while the engine is copying out the next
+         */
+        @Override
+        public Spliterator<E> spliterator() {
+            return new Slices(0, -1);
+        }
+
+        private final class Slices implements Spliterator<E> {
+
+            private static final int SLICE = 1024;
+
+            private int index;
+            private int fence;
+            private java.lang.Object[] slice = new java.lang.Object[0];
+            private int position;
+
+            Slices(int index, int fence) {
+                this.index = index;
+                this.fence = fence;
+            }
+
+            private int fence() {
+                if(fence < 0) {
+                    fence = size();
+                }
+                return fence;
+            }
+
+            @Override
+            public boolean tryAdvance(Consumer<? super E> action) {
+                if(position == slice.length) {
+                    if(index >= fence()) {
+                        return false;
+                    }
+                    int from = index, to = Math.min(fence, index + SLICE);
+                    slice = engine.execute(() -> {
+                        java.lang.Object[] values = engine.slice(live(mirror), from, to);
+                        for(int i = 0; i < values.length; i++) {
+                            values[i] = e.apply(values[i]);
+                        }
+                        return values;
+                    });
+                    index = to;
+                    position = 0;
+                }
+                action.accept((E)slice[position++]);
+                return true;
+            }
+
+            @Override
+            public Spliterator<E> trySplit() {
+                if(position != slice.length || fence() - index < 2 * SLICE) {
+                    return null;
+                }
+                int middle = (index + fence) >>> 1;
+                Slices prefix = new Slices(index, middle);
+                index = middle;
+                return prefix;
+            }
+
+            @Override
+            public long estimateSize() {
+                return fence() - index + slice.length - position;
+            }
+
+            @Override
+            public int characteristics() {
+                return ORDERED | SIZED | SUBSIZED;
+            }
+        }
+
+        /**
+         * An immutable copy of the array made with a single call into the engine, passing it back to JS yields the
+         * original array
+         */
+        public List<E> snapshot() {
+            return new Snapshot<>(live(mirror), toArray());
+        }
+
+        @Override
+        public void release() {
+            mirror = null;
         }
 
         @Override
         public String toString() {
-            return mirror.toString();
+            return live(mirror).toString();
         }
 
         @Override
         public int hashCode() {
-            return mirror.hashCode();
+            return live(mirror).hashCode();
         }
 
         @Override
         public boolean equals(java.lang.Object obj) {
-            return mirror.equals(JS.heap.getOrDefault(obj, obj));
+            return live(mirror).equals(JS.heap.getOrDefault(obj, obj));
         }
     }
 
-    static class Object extends AbstractMap<String, java.lang.Object> {
+    public static final class DoubleArray extends AbstractList<Number> implements RandomAccess, Wrapper {
 
-        private final ScriptObjectMirror mirror;
+        private final double[] values;
+        private JSObject mirror;
 
-        Object(ScriptObjectMirror mirror) {
-            this.mirror = mirror;
+        private DoubleArray(double[] values) {
+            this.values = values;
+            this.mirror = Engine.current().fromDoubles(values);
             JS.heap.put(this, mirror);
         }
 
+        public double getDouble(int index) {
+            return values[index];
+        }
+
+        public double[] toDoubleArray() {
+            return values.clone();
+        }
+
+        @Override
+        public Number get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public void release() {
+            mirror = null;
+        }
+    }
+
+    private static final class Snapshot<E> extends Array<E> implements RandomAccess {
+
+        private final java.lang.Object[] values;
+
+        Snapshot(JSObject mirror, java.lang.Object[] values) {
+            super(mirror);
+            this.values = values;
+        }
+
+        @Override
+        public E get(int index) {
+            return (E)values[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public java.lang.Object[] toArray() {
+            return values.clone();
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return Collections.unmodifiableList(Arrays.asList((E[])values)).iterator();
+        }
+
+        @Override
+        public Spliterator<E> spliterator() {
+            return Spliterators.spliterator(values, Spliterator.ORDERED | Spliterator.IMMUTABLE);
+        }
+
+        @Override
+        public List<E> snapshot() {
+            return this;
+        }
+
         @Override
         public String toString() {
-            return mirror.toString();
+            return Arrays.toString(values);
         }
 
         @Override
         public int hashCode() {
-            return mirror.hashCode();
+            return Arrays.asList(values).hashCode();
+        }
+
+        @Override
+        public boolean equals(java.lang.Object obj) {
+            return obj == this || Arrays.asList(values).equals(obj);
+        }
+    }
+
+    /**
+     * A string returned from JS that is left in the engine and copied across a chunk at a time as it is read, so a large
+     * string is only copied in full by {@link #toString()}. Reading the first chunk of a concatenated string still
+     * flattens it inside the engine
+     */
+    public static final class Text implements CharSequence {
+
+        private static final int CHUNK = 64 * 1024;
+
+        private final Engine engine;
+        private final JSObject text;
+        private final int offset;
+        private final int length;
+        private volatile Chunk chunk;
+        private volatile String string;
+
+        private Text(Engine engine, JSObject text, int offset, int length) {
+            this.engine = engine;
+            this.text = text;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if(index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            }
+            String string = this.string;
+            if(string != null) {
+                return string.charAt(index);
+            }
+            Chunk chunk = this.chunk;
+            if(chunk == null || index < chunk.start || index >= chunk.start + chunk.text.length()) {
+                int start = index - index % CHUNK;
+                this.chunk = chunk = new Chunk(start, engine.substring(text, offset + start, offset + Math.min(length, start + CHUNK)));
+            }
+            return chunk.text.charAt(index - chunk.start);
+        }
+
+        @Override
+        public Text subSequence(int start, int end) {
+            if(start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException(start + ", " + end);
+            }
+            return new Text(engine, text, offset + start, end - start);
+        }
+
+        /**
+         * A reader over the string that copies it across from the engine a chunk at a time
+         */
+        public Reader reader() {
+            return new Reader() {
+
+                private int position;
+                private String chunk = "";
+                private int index;
+
+                @Override
+                public int read(char[] buffer, int off, int len) {
+                    if(len == 0) {
+                        return 0;
+                    }
+                    if(index == chunk.length()) {
+                        if(position == length) {
+                            return -1;
+                        }
+                        int end = Math.min(length, position + CHUNK);
+                        chunk = subSequence(position, end).toString();
+                        position = end;
+                        index = 0;
+                    }
+                    int read = Math.min(len, chunk.length() - index);
+                    chunk.getChars(index, index + read, buffer, off);
+                    index += read;
+                    return read;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            String string = this.string;
+            if(string == null) {
+                this.string = string = engine.substring(text, offset, offset + length);
+            }
+            return string;
+        }
+
+        private static final class Chunk {
+
+            final int start;
+            final String text;
+
+            Chunk(int start, String text) {
+                this.start = start;
+                this.text = text;
+            }
+        }
+    }
+
+    /**
+     * A map view of a JS object's own enumerable properties. Lookups go straight to the object, the entry set is
+     * cached from the first time it is used and its values are wrapped when they are first accessed, call
+     * {@link #invalidate()} to see properties added or removed since
+     */
+    public static class Object extends AbstractMap<String, java.lang.Object> implements Wrapper {
+
+        private final Engine engine = Engine.current();
+        private ScriptObjectMirror mirror;
+        private volatile Entries entries;
+
+        Object(ScriptObjectMirror mirror) {
+            this.mirror = mirror;
+            JS.heap.put(this, mirror);
+        }
+
+        @Override
+        public java.lang.Object get(java.lang.Object key) {
+            if(!(key instanceof String)) {
+                return null;
+            }
+            return engine.execute(() -> JS.<java.lang.Object>wrap(engine.getOwn(live(mirror), (String)key), JS.Object::new));
+        }
+
+        @Override
+        public boolean containsKey(java.lang.Object key) {
+            return key instanceof String && engine.hasOwn(live(mirror), (String)key);
+        }
+
+        @Override
+        public int size() {
+            Entries entries = this.entries;
+            return entries != null ? entries.size() : engine.keys(live(mirror)).length;
         }
 
         @Override
         public Set<Entry<String, java.lang.Object>> entrySet() {
-            return Arrays.stream(mirror.getOwnKeys(false)).map(key -> new AbstractMap.SimpleEntry<String, java.lang.Object>(key, JS.wrap(mirror.get(key), JS.Object::new))).collect(Collectors.toSet());
+            Entries entries = this.entries;
+            if(entries == null) {
+                this.entries = entries = new Entries(engine.keys(live(mirror)));
+            }
+            return entries;
+        }
+
+        public void invalidate() {
+            entries = null;
+        }
+
+        @Override
+        public void release() {
+            mirror = null;
+        }
+
+        @Override
+        public String toString() {
+            return live(mirror).toString();
+        }
+
+        @Override
+        public int hashCode() {
+            return live(mirror).hashCode();
         }
 
         @Override
         public boolean equals(java.lang.Object obj) {
-            return mirror.equals(JS.heap.getOrDefault(obj, obj));
+            return live(mirror).equals(JS.heap.getOrDefault(obj, obj));
+        }
+
+        private final class Entries extends AbstractSet<Entry<String, java.lang.Object>> {
+
+            private final String[] keys;
+            private final java.lang.Object[] values;
+
+            Entries(String[] keys) {
+                this.keys = keys;
+                this.values = new java.lang.Object[keys.length];
+                Arrays.fill(values, this);
+            }
+
+            @Override
+            public Iterator<Entry<String, java.lang.Object>> iterator() {
+                return new Iterator<Entry<String, java.lang.Object>>() {
+
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < keys.length;
+                    }
+
+                    @Override
+                    public Entry<String, java.lang.Object> next() {
+                        if(!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int i = index++;
+                        return new AbstractMap.SimpleImmutableEntry<String, java.lang.Object>(keys[i], null) {
+                            @Override
+                            public java.lang.Object getValue() {
+                                return value(i);
+                            }
+                        };
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+
+            private java.lang.Object value(int index) {
+                java.lang.Object value = values[index];
+                if(value == this) {
+                    values[index] = value = get(keys[index]);
+                }
+                return value;
+            }
         }
     }
 
-    static abstract class AbstractMirror extends AbstractJSObject {
+    /**
+     * The methods of a generated class that a Java subclass may override, built once per class and shared by the
+     * mirrors of all its subclass instances. Each method is passed the receiver from the mirror it is called on
+     */
+    static final class Dispatch<T> {
 
-        private final JSObject prototype;
         private final Map<String, JSObject> methods = new HashMap<>();
 
-        AbstractMirror() {
-            this(null);
-        }
-
-        AbstractMirror(JSObject prototype) {
-            this.prototype = prototype;
-            build((name, invocation) -> methods.put(name, new AbstractJSObject() {
+        Dispatch<T> method(String name, BiFunction<T, java.lang.Object[], java.lang.Object> invocation) {
+            methods.put(name, new AbstractJSObject() {
                 @Override
                 public java.lang.Object call(java.lang.Object thiz, java.lang.Object... args) {
-                    return invocation.apply(args);
+                    if(!(thiz instanceof SubclassMirror)) {
+                        throw new IllegalArgumentException(name + " called on " + thiz);
+                    }
+                    return invocation.apply(((SubclassMirror<T>)thiz).receiver, args);
                 }
-            }));
 
+                @Override
+                public boolean isFunction() {
+                    return true;
+                }
+            });
+            return this;
         }
+    }
 
-        abstract void build(BiConsumer<String, Function<java.lang.Object[], java.lang.Object>> builder);
+    /**
+     * The mirror of an instance of a Java subclass of a generated class, routes calls to overridable methods through
+     * the class's dispatch table to the instance and everything else to the JS object
+     */
+    static final class SubclassMirror<T> extends AbstractJSObject {
+
+        private final JSObject prototype;
+        private final T receiver;
+        private final Dispatch<T> dispatch;
+
+        SubclassMirror(JSObject prototype, T receiver, Dispatch<T> dispatch) {
+            this.prototype = prototype;
+            this.receiver = receiver;
+            this.dispatch = dispatch;
+        }
 
         @Override
         public java.lang.Object getMember(String name) {
-            java.lang.Object object = methods.get(name);
+            java.lang.Object object = dispatch.methods.get(name);
             return object != null ? object : prototype.getMember(name);
         }
 
@@ -324,4 +2466,169 @@ class JS {
             prototype.setMember(name, value);
         }
     }
+
+    /**
+     * The proxy class of an interface and the instances adapting JS objects to it, an object wrapped again while its
+     * adapter is reachable gets the same adapter back
+     */
+    private static final class Adapters {
+
+        private final Constructor<?> constructor;
+        private final Map<ScriptObjectMirror, WeakReference<java.lang.Object>> instances = new WeakHashMap<>();
+
+        Adapters(Class<?> type) {
+            try {
+                constructor = Proxy.getProxyClass(type.getClassLoader(), type).getConstructor(InvocationHandler.class);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        synchronized java.lang.Object adapt(Engine engine, ScriptObjectMirror mirror) {
+            WeakReference<java.lang.Object> reference = instances.get(mirror);
+            java.lang.Object instance = reference == null ? null : reference.get();
+            if(instance == null) {
+                try {
+                    instance = constructor.newInstance(new Adapter(engine, mirror));
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+                instances.put(mirror, new WeakReference<>(instance));
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * Implements an interface with a JS object, a function implements every abstract method and an object its members
+     * of the same name. Default methods the object does not define run their Java implementation
+     */
+    private static final class Adapter implements InvocationHandler {
+
+        private static final java.lang.reflect.Method privateLookupIn = privateLookupIn();
+
+        private final Engine engine;
+        private final ScriptObjectMirror mirror;
+
+        Adapter(Engine engine, ScriptObjectMirror mirror) {
+            this.engine = engine;
+            this.mirror = mirror;
+        }
+
+        @Override
+        public java.lang.Object invoke(java.lang.Object proxy, java.lang.reflect.Method method, java.lang.Object[] args) throws Throwable {
+            if(method.getDeclaringClass() == java.lang.Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return String.valueOf(engine.callMember(mirror, "toString"));
+                }
+            }
+            java.lang.Object function = mirror.isFunction() ? (method.isDefault() ? null : mirror) : engine.get(mirror, method.getName());
+            if(!(function instanceof ScriptObjectMirror) || !((ScriptObjectMirror)function).isFunction()) {
+                if(method.isDefault()) {
+                    return invokeDefault(proxy, method, args);
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+            java.lang.Object result = engine.invoke((ScriptObjectMirror)function, function == mirror ? null : mirror, args == null ? new java.lang.Object[0] : args);
+            Class<?> type = method.getReturnType();
+            if(type == void.class) {
+                return null;
+            }
+            return type.isInstance(result) || result == null && !type.isPrimitive() ? result : ScriptUtils.convert(result, type);
+        }
+
+        private static java.lang.Object invokeDefault(java.lang.Object proxy, java.lang.reflect.Method method, java.lang.Object[] args) throws Throwable {
+            Class<?> type = method.getDeclaringClass();
+            return lookup(type).unreflectSpecial(method, type).bindTo(proxy).invokeWithArguments(args);
+        }
+
+        /**
+         * A lookup with private access to the interface, from {@code MethodHandles.privateLookupIn} where the runtime has
+         * it and otherwise from the constructor JDK 8 keeps private
+         */
+        private static MethodHandles.Lookup lookup(Class<?> type) throws Throwable {
+            if(privateLookupIn != null) {
+                try {
+                    return (MethodHandles.Lookup)privateLookupIn.invoke(null, type, MethodHandles.lookup());
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+            Constructor<MethodHandles.Lookup> lookup = MethodHandles.Lookup.class.getDeclaredConstructor(Class.class, int.class);
+            lookup.setAccessible(true);
+            return lookup.newInstance(type, MethodHandles.Lookup.PRIVATE);
+        }
+
+        private static java.lang.reflect.Method privateLookupIn() {
+            try {
+                return MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * The JSON the graphs of {@link JS#transfer(java.lang.Object)} cross as, parsed by the engine in a single call
+     */
+    private static final class Json {
+
+        static String stringify(java.lang.Object value) {
+            StringBuilder out = new StringBuilder();
+            write(out, value, Collections.newSetFromMap(new IdentityHashMap<>()));
+            return out.toString();
+        }
+
+        private static void write(StringBuilder out, java.lang.Object value, Set<java.lang.Object> path) {
+            if((value instanceof Map || value instanceof Iterable || value instanceof java.lang.Object[]) && !path.add(value)) {
+                throw new IllegalArgumentException("Cannot transfer a cyclic graph");
+            }
+            if(value instanceof Map) {
+                out.append('{');
+                String separator = "";
+                for(Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+                    out.append(separator);
+                    write(out, String.valueOf(entry.getKey()), path);
+                    out.append(':');
+                    write(out, entry.getValue(), path);
+                    separator = ",";
+                }
+                out.append('}');
+                path.remove(value);
+            } else if(value instanceof Iterable || value instanceof java.lang.Object[]) {
+                out.append('[');
+                String separator = "";
+                for(java.lang.Object element : value instanceof Iterable ? (Iterable<?>)value : Arrays.asList((java.lang.Object[])value)) {
+                    out.append(separator);
+                    write(out, element, path);
+                    separator = ",";
+                }
+                out.append(']');
+                path.remove(value);
+            } else if(value instanceof Number && Double.isFinite(((Number)value).doubleValue()) || value instanceof Boolean) {
+                out.append(value);
+            } else if(value instanceof CharSequence || value instanceof Character) {
+                out.append('"');
+                CharSequence string = value instanceof Character ? value.toString() : (CharSequence)value;
+                for(int i = 0; i < string.length(); i++) {
+                    char c = string.charAt(i);
+                    if(c == '"' || c == '\\') {
+                        out.append('\\').append(c);
+                    } else if(c < ' ') {
+                        out.append(String.format("\\u%04x", (int)c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+                out.append('"');
+            } else {
+                out.append("null");
+            }
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package io.xrails;
 
+import java.nio.*;
 import java.util.*;
 
 public interface SimpleInterface {
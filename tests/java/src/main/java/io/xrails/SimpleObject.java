@@ -1,17 +1,20 @@
 package io.xrails;
 
+import java.nio.*;
 import java.util.*;
 import java.util.function.*;
+import java.util.concurrent.*;
 import jdk.nashorn.api.scripting.*;
 
-import static io.xrails.Src.global;
+import static io.xrails.Src.Bundle.global;
 
-public class SimpleObject {
+public class SimpleObject implements JS.Wrapper {
 
-    private static final ScriptObjectMirror staticMirror = (ScriptObjectMirror)global.get("SimpleObject");
+    private static final JS.Mirror staticMirror = global.mirror("SimpleObject");
 
-    private final ScriptObjectMirror prototype;
-    private final JSObject mirror;
+    private final JS.Engine engine = JS.Engine.current();
+    private ScriptObjectMirror prototype;
+    private JSObject mirror;
 
     SimpleObject(ScriptObjectMirror mirror) { 
         this.prototype = mirror; 
@@ -19,6 +22,21 @@ public class SimpleObject {
         JS.heap.put(this, mirror);
     }
 
+    private static final class Methods {
+        static final JS.Method numberSingleObjectArgMethod = staticMirror.method("numberSingleObjectArgMethod");
+        static final JS.Method callOverriddenMethod = staticMirror.method("callOverriddenMethod");
+        static final JS.Method methodToOverride = staticMirror.method("methodToOverride");
+        static final JS.Method upcastThisToObject = staticMirror.method("upcastThisToObject");
+    }
+
+    private static final class Subclasses {
+        static final JS.Dispatch<SimpleObject> dispatch = new JS.Dispatch<SimpleObject>()
+                .method("numberSingleObjectArgMethod", (self, args) -> self.numberSingleObjectArgMethod((SimpleObject)args[0]))
+                .method("callOverriddenMethod", (self, args) -> { self.callOverriddenMethod(); return null; })
+                .method("methodToOverride", (self, args) -> { self.methodToOverride(); return null; })
+                .method("upcastThisToObject", (self, args) -> self.upcastThisToObject());
+    }
+
     public static Boolean staticVoidNoArgMethodCalled() {
         return (Boolean)staticMirror.get("staticVoidNoArgMethodCalled");
     }
@@ -28,38 +46,22 @@ public class SimpleObject {
     }
     
     public Boolean methodToOverrideCalled() {
-        return (Boolean)prototype.get("methodToOverrideCalled");
+        return (Boolean)engine.get(prototype, "methodToOverrideCalled");
     }
     
     public void methodToOverrideCalled(Boolean newValue) {
-        prototype.setMember("methodToOverrideCalled", newValue);
+        engine.setMember(prototype, "methodToOverrideCalled", newValue);
     }
     
     public SimpleObject() {
         prototype = (ScriptObjectMirror)staticMirror.newObject(); 
-        mirror = getClass() == SimpleObject.class ? prototype : new JS.AbstractMirror(prototype) { 
-            @Override 
-            void build(BiConsumer<String, Function<Object[], Object>> builder) { 
-                builder.accept("numberSingleObjectArgMethod", args -> numberSingleObjectArgMethod((SimpleObject)args[0]));
-                builder.accept("callOverriddenMethod", args -> { callOverriddenMethod(); return null; });
-                builder.accept("methodToOverride", args -> { methodToOverride(); return null; });
-                builder.accept("upcastThisToObject", args -> upcastThisToObject()); 
-            } 
-        }; 
+        mirror = getClass() == SimpleObject.class ? prototype : new JS.SubclassMirror<>(prototype, this, Subclasses.dispatch); 
         JS.heap.put(this, mirror); 
     }
 
     public SimpleObject(Number v) {
         prototype = (ScriptObjectMirror)staticMirror.newObject(v); 
-        mirror = getClass() == SimpleObject.class ? prototype : new JS.AbstractMirror(prototype) { 
-            @Override 
-            void build(BiConsumer<String, Function<Object[], Object>> builder) { 
-                builder.accept("numberSingleObjectArgMethod", args -> numberSingleObjectArgMethod((SimpleObject)args[0]));
-                builder.accept("callOverriddenMethod", args -> { callOverriddenMethod(); return null; });
-                builder.accept("methodToOverride", args -> { methodToOverride(); return null; });
-                builder.accept("upcastThisToObject", args -> upcastThisToObject()); 
-            } 
-        }; 
+        mirror = getClass() == SimpleObject.class ? prototype : new JS.SubclassMirror<>(prototype, this, Subclasses.dispatch); 
         JS.heap.put(this, mirror); 
     }
 
@@ -68,33 +70,39 @@ public class SimpleObject {
     }
 
     public Number numberSingleObjectArgMethod(SimpleObject a) {
-        return (Number)((JSObject)prototype.getMember("numberSingleObjectArgMethod")).call(mirror, JS.heap.get(a));
+        return (Number)engine.call(Methods.numberSingleObjectArgMethod, prototype, mirror, JS.heap.get(a, engine));
     }
 
     public void callOverriddenMethod() {
-        ((JSObject)prototype.getMember("callOverriddenMethod")).call(mirror);
+        engine.call(Methods.callOverriddenMethod, prototype, mirror);
     }
 
     public void methodToOverride() {
-        ((JSObject)prototype.getMember("methodToOverride")).call(mirror);
+        engine.call(Methods.methodToOverride, prototype, mirror);
     }
 
     public Object upcastThisToObject() {
-        return JS.wrap(((JSObject)prototype.getMember("upcastThisToObject")).call(mirror), JS.Object::new);
+        return engine.execute(() -> JS.<Object>wrap(engine.call(Methods.upcastThisToObject, prototype, mirror), JS.Object::new));
+    }
+
+    @Override
+    public void release() {
+        prototype = null;
+        mirror = null;
     }
 
     @Override
     public String toString() {
-        return mirror.toString();
+        return JS.live(mirror).toString();
     }
 
     @Override
     public int hashCode() {
-        return mirror.hashCode();
+        return JS.live(mirror).hashCode();
     }
 
     @Override
     public boolean equals(Object obj) {
-        return mirror.equals(JS.heap.getOrDefault(obj, obj));
+        return JS.live(mirror).equals(JS.heap.getOrDefault(obj, obj));
     }
 }
\ No newline at end of file
@@ -1,55 +1,66 @@
 package io.xrails;
 
+import java.nio.*;
 import java.util.*;
 import java.util.function.*;
+import java.util.concurrent.*;
 import jdk.nashorn.api.scripting.*;
 
-import static io.xrails.Src.global;
+import static io.xrails.Src.Bundle.global;
 
-public class SpecialException extends Exception {
+public class SpecialException extends Exception implements JS.Wrapper {
 
-    private static final ScriptObjectMirror staticMirror = (ScriptObjectMirror)global.get("SpecialError");
+    private static final JS.Mirror staticMirror = global.mirror("SpecialError");
+    static final JS.Thrown<SpecialException> thrown = new JS.Thrown<>(staticMirror, SpecialException::new);
 
-    private final ScriptObjectMirror prototype;
-    private final JSObject mirror;
+    private final JS.Engine engine = JS.Engine.current();
+    private ScriptObjectMirror prototype;
+    private JSObject mirror;
 
     SpecialException(ScriptObjectMirror mirror) { 
+        super(null, null, true, !JS.lightweightErrors);
         this.prototype = mirror; 
         this.mirror = mirror; 
         JS.heap.put(this, mirror);
     }
 
+    private static final class Subclasses {
+        static final JS.Dispatch<SpecialException> dispatch = new JS.Dispatch<SpecialException>();
+    }
+
     public String message() {
-        return (String)prototype.get("message");
+        return (String)engine.get(prototype, "message");
     }
     
     public void message(String newValue) {
-        prototype.setMember("message", newValue);
+        engine.setMember(prototype, "message", newValue);
     }
     
     public SpecialException(String message) {
+        super(null, null, true, !JS.lightweightErrors);
         prototype = (ScriptObjectMirror)staticMirror.newObject(message); 
-        mirror = getClass() == SpecialException.class ? prototype : new JS.AbstractMirror(prototype) { 
-            @Override 
-            void build(BiConsumer<String, Function<Object[], Object>> builder) { 
- 
-            } 
-        }; 
+        mirror = getClass() == SpecialException.class ? prototype : new JS.SubclassMirror<>(prototype, this, Subclasses.dispatch); 
         JS.heap.put(this, mirror); 
     }
 
+    @Override
+    public void release() {
+        prototype = null;
+        mirror = null;
+    }
+
     @Override
     public String toString() {
-        return mirror.toString();
+        return JS.live(mirror).toString();
     }
 
     @Override
     public int hashCode() {
-        return mirror.hashCode();
+        return JS.live(mirror).hashCode();
     }
 
     @Override
     public boolean equals(Object obj) {
-        return mirror.equals(JS.heap.getOrDefault(obj, obj));
+        return JS.live(mirror).equals(JS.heap.getOrDefault(obj, obj));
     }
 }
\ No newline at end of file
@@ -1,63 +1,99 @@
 package io.xrails;
 
+import java.nio.*;
 import java.util.*;
 import java.util.function.*;
+import java.util.concurrent.*;
 import jdk.nashorn.api.scripting.*;
 
+import static io.xrails.Src.Bundle.global;
+
 public class Src {
 
-    static final ScriptObjectMirror global = JS.eval("src.js");
+    static final class Bundle {
+        static final JS.Mirror global = JS.module("src.js");
+    }
+
+    public static JS.Batch batch() {
+        return new JS.Batch(global);
+    }
+
+    private static final JS.Const<Boolean> booleanConst = new JS.Const<>(() -> (Boolean)global.get("booleanConst"));
 
     public static Boolean booleanConst() {
-        return (Boolean)global.get("booleanConst");
+        return booleanConst.get();
     }
     
+    private static final JS.Const<Number> numberConst = new JS.Const<>(() -> (Number)global.get("numberConst"));
+
     public static Number numberConst() {
-        return (Number)global.get("numberConst");
+        return numberConst.get();
     }
     
+    private static final JS.Const<String> stringConst = new JS.Const<>(() -> (String)global.get("stringConst"));
+
     public static String stringConst() {
-        return (String)global.get("stringConst");
+        return stringConst.get();
     }
     
+    private static final JS.Const<List<Optional<Number>>> numberOrNullArrayConst = new JS.Const<>(() -> JS.wrap(global.get("numberOrNullArrayConst"), JS::array));
+
     public static List<Optional<Number>> numberOrNullArrayConst() {
-        return JS.wrap(global.get("numberOrNullArrayConst"), JS.Array::new);
+        return numberOrNullArrayConst.get();
     }
     
+    private static final JS.Const<List<Number>> numberArrayConst = new JS.Const<>(() -> JS.wrap(global.get("numberArrayConst"), JS::array));
+
     public static List<Number> numberArrayConst() {
-        return JS.wrap(global.get("numberArrayConst"), JS.Array::new);
+        return numberArrayConst.get();
     }
     
+    private static final JS.Const<List<List<String>>> stringArrayArrayConst = new JS.Const<>(() -> JS.wrap(global.get("stringArrayArrayConst"), o -> JS.array(o, JS::array)));
+
     public static List<List<String>> stringArrayArrayConst() {
-        return JS.wrap(global.get("stringArrayArrayConst"), o -> new JS.Array<>(o, JS.Array::new));
+        return stringArrayArrayConst.get();
     }
     
+    private static final JS.Const<Object> anyConst = new JS.Const<>(() -> JS.<Object>wrap(global.get("anyConst"), JS.Object::new));
+
     public static Object anyConst() {
-        return JS.wrap(global.get("anyConst"), JS.Object::new);
+        return anyConst.get();
     }
     
+    private static final JS.Const<Optional<Boolean>> optionalBooleanConst = new JS.Const<>(() -> Optional.ofNullable((Boolean)global.get("optionalBooleanConst")));
+
     public static Optional<Boolean> optionalBooleanConst() {
-        return Optional.ofNullable((Boolean)global.get("optionalBooleanConst"));
+        return optionalBooleanConst.get();
     }
     
+    private static final JS.Const<Optional<Number>> optionalNumberConst = new JS.Const<>(() -> Optional.ofNullable((Number)global.get("optionalNumberConst")));
+
     public static Optional<Number> optionalNumberConst() {
-        return Optional.ofNullable((Number)global.get("optionalNumberConst"));
+        return optionalNumberConst.get();
     }
     
+    private static final JS.Const<Optional<String>> optionalStringConst = new JS.Const<>(() -> Optional.ofNullable((String)global.get("optionalStringConst")));
+
     public static Optional<String> optionalStringConst() {
-        return Optional.ofNullable((String)global.get("optionalStringConst"));
+        return optionalStringConst.get();
     }
     
+    private static final JS.Const<Optional<List<Number>>> optionalNumberArrayConst = new JS.Const<>(() -> Optional.ofNullable(JS.wrap(global.get("optionalNumberArrayConst"), JS::array)));
+
     public static Optional<List<Number>> optionalNumberArrayConst() {
-        return Optional.ofNullable(JS.wrap(global.get("optionalNumberArrayConst"), JS.Array::new));
+        return optionalNumberArrayConst.get();
     }
     
+    private static final JS.Const<Optional<Object>> optionalNullAnyConst = new JS.Const<>(() -> Optional.ofNullable(JS.<Object>wrap(global.get("optionalNullAnyConst"), JS.Object::new)));
+
     public static Optional<Object> optionalNullAnyConst() {
-        return Optional.ofNullable(JS.wrap(global.get("optionalNullAnyConst"), JS.Object::new));
+        return optionalNullAnyConst.get();
     }
     
+    private static final JS.Const<Optional<Object>> optionalNonNullAnyConst = new JS.Const<>(() -> Optional.ofNullable(JS.<Object>wrap(global.get("optionalNonNullAnyConst"), JS.Object::new)));
+
     public static Optional<Object> optionalNonNullAnyConst() {
-        return Optional.ofNullable(JS.wrap(global.get("optionalNonNullAnyConst"), JS.Object::new));
+        return optionalNonNullAnyConst.get();
     }
     
     public static Boolean booleanVar() {
@@ -85,7 +121,7 @@ public class Src {
     }
     
     public static List<Number> numberArrayVar() {
-        return JS.wrap(global.get("numberArrayVar"), JS.Array::new);
+        return JS.wrap(global.get("numberArrayVar"), JS::array);
     }
     
     public static void numberArrayVar(List<Number> newValue) {
@@ -93,7 +129,7 @@ public class Src {
     }
     
     public static Object anyVar() {
-        return JS.wrap(global.get("anyVar"), JS.Object::new);
+        return JS.<Object>wrap(global.get("anyVar"), JS.Object::new);
     }
     
     public static void anyVar(Object newValue) {
@@ -101,7 +137,7 @@ public class Src {
     }
     
     public static List<List<String>> stringArrayArrayVar() {
-        return JS.wrap(global.get("stringArrayArrayVar"), o -> new JS.Array<>(o, JS.Array::new));
+        return JS.wrap(global.get("stringArrayArrayVar"), o -> JS.array(o, JS::array));
     }
     
     public static void stringArrayArrayVar(List<List<String>> newValue) {
@@ -133,7 +169,7 @@ public class Src {
     }
     
     public static Optional<List<Number>> optionalNumberArrayVar() {
-        return Optional.ofNullable(JS.wrap(global.get("optionalNumberArrayVar"), JS.Array::new));
+        return Optional.ofNullable(JS.wrap(global.get("optionalNumberArrayVar"), JS::array));
     }
     
     public static void optionalNumberArrayVar(List<Number> newValue) {
@@ -141,7 +177,7 @@ public class Src {
     }
     
     public static Optional<Object> optionalAnyVar() {
-        return Optional.ofNullable(JS.wrap(global.get("optionalAnyVar"), JS.Object::new));
+        return Optional.ofNullable(JS.<Object>wrap(global.get("optionalAnyVar"), JS.Object::new));
     }
     
     public static void optionalAnyVar(Object newValue) {
@@ -185,29 +221,46 @@ public class Src {
         try {
             global.callMember("throwSpecialError");
         } catch (NashornException e) {
-            ScriptObjectMirror mirror = (ScriptObjectMirror)e.getEcmaError();
-            Object constructor = mirror.get("constructor");
-            if(constructor instanceof ScriptObjectMirror) {
-                Object name = ((ScriptObjectMirror)constructor).get("name");
-                if(name instanceof String) switch ((String)name) {
-                    case "SpecialError":
-                        throw new SpecialException((ScriptObjectMirror)e.getEcmaError());
-                }
+            Exception error = JS.translate(e, JS.Engine.current(), SpecialException.thrown);
+            if(error instanceof SpecialException) {
+                throw (SpecialException)error;
             }
             throw e;
         }
     }
 
+    public static CompletableFuture<Number> delayedNumber(Number value, Number delay) {
+        return JS.future(global.callMember("delayedNumber", value, delay), o -> (Number)o);
+    }
+
+    public static String repeatedString(String text, Number count) {
+        return (String)global.callMember("repeatedString", text, count);
+    }
+
+    public static JS.Text repeatedStringText(String text, Number count) {
+        return global.text("repeatedString", text, count);
+    }
+
+    public static ByteBuffer invertedBytes(ByteBuffer bytes) {
+        return JS.buffer(global.callMember("invertedBytes", JS.bytes(bytes)));
+    }
+
+    public static ByteBuffer byteRange(Number count) {
+        return JS.buffer(global.callMember("byteRange", count));
+    }
+
     public static SimpleObject simpleObjectInstance() {
         return JS.wrap(global.get("simpleObjectInstance"), SimpleObject::new);
     }
     
+    private static final JS.Const<Object> anyObjectInstance = new JS.Const<>(() -> JS.<Object>wrap(global.get("anyObjectInstance"), JS.Object::new));
+
     public static Object anyObjectInstance() {
-        return JS.wrap(global.get("anyObjectInstance"), JS.Object::new);
+        return anyObjectInstance.get();
     }
     
     public static Optional<Object> optionalAnyObjectInstance() {
-        return Optional.ofNullable(JS.wrap(global.get("optionalAnyObjectInstance"), JS.Object::new));
+        return Optional.ofNullable(JS.<Object>wrap(global.get("optionalAnyObjectInstance"), JS.Object::new));
     }
     
     public static void optionalAnyObjectInstance(Object newValue) {
@@ -1,16 +1,41 @@
 package io.xrails;
 
+import jdk.nashorn.api.scripting.AbstractJSObject;
+import jdk.nashorn.api.scripting.NashornException;
+import jdk.nashorn.api.scripting.ScriptObjectMirror;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static io.xrails.Src.*;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
 
 /**
  * Created by nbransby on 20/02/2016.
@@ -33,12 +58,32 @@ public class SrcTest {
     }
 
     @Test
+    @SuppressWarnings("try")
     public void testSpecialException() throws Exception {
         try {
             throwSpecialError();
             fail();
         } catch (SpecialException e) {
             assertEquals("Special error message", e.message());
+            assertEquals(JS.lightweightErrors, e.getStackTrace().length == 0);
+            e.addSuppressed(new IllegalStateException());
+            assertEquals(1, e.getSuppressed().length);
+        }
+        assertEquals("Special error message", new SpecialException("Special error message").message());
+
+        JS.Isolate isolate = JS.isolate();
+        ScriptObjectMirror thrower;
+        try (JS.Binding binding = isolate.bind()) {
+            thrower = (ScriptObjectMirror)batch().call("Function", "throw new SpecialError('isolated')").run().get(0);
+        }
+        try {
+            isolate.engine().invoke(thrower, null);
+            fail();
+        } catch (NashornException e) {
+            assertSame(e, JS.translate(e, JS.Engine.current(), SpecialException.thrown));
+            Exception error = JS.translate(e, isolate.engine(), SpecialException.thrown);
+            assertThat(error, instanceOf(SpecialException.class));
+            assertEquals("isolated", ((SpecialException)error).message());
         }
     }
 
@@ -57,6 +102,25 @@ public class SrcTest {
         assertEquals(simpleObjectInstance().upcastThisToObject(), simpleObjectInstance());
     }
 
+    @Test
+    public void testPrototypeMutation() throws Exception {
+        SimpleObject o = new SimpleObject(2);
+        assertEquals(14.0, o.numberSingleObjectArgMethod(simpleObjectInstance()));
+        ScriptObjectMirror prototype = (ScriptObjectMirror)Bundle.global.mirror("SimpleObject").get("prototype");
+        prototype.setMember("numberSingleObjectArgMethod", new AbstractJSObject() {
+            @Override
+            public Object call(Object thiz, Object... args) {
+                return 42.0;
+            }
+
+            @Override
+            public boolean isFunction() {
+                return true;
+            }
+        });
+        assertEquals(42.0, o.numberSingleObjectArgMethod(simpleObjectInstance()));
+    }
+
     private boolean testInheritanceMethodCalled = false;
 
     @Test
@@ -91,6 +155,7 @@ public class SrcTest {
     public void testInterface() throws Exception {
         simpleInterfaceInstance().voidNoArgMethod();
         assertTrue(simpleInterfaceInstanceCalled());
+        assertSame(simpleInterfaceInstance(), simpleInterfaceInstance());
 
         acceptSimpleInterface(new SimpleInterface() {
             @Override
@@ -116,10 +181,100 @@ public class SrcTest {
 
         assertEquals("stringNoArgLambdaReturnValue", stringNoArgLambda().get());
         assertEquals(stringNoArgLambda().get(), stringNoArgLambda().get());
+        assertSame(stringNoArgLambda(), stringNoArgLambda());
+
+        Function<Object, Object> twice = JS.wrap(batch().call("Function", "x", "return x * 2").run().get(0), Function.class);
+        assertEquals((Object)7, twice.andThen(x -> ((Number)x).intValue() + 1).apply(3));
         stringNoArgLambda(() -> "expectedReturnValue");
         assertEquals("expectedReturnValue", stringNoArgLambda().get());
     }
 
+    @Test
+    public void testReevaluation() throws Exception {
+        voidNoArgFunction();
+        assertTrue(voidNoArgFunctionCalled());
+        JS.eval("../input/src.js");
+        assertFalse(voidNoArgFunctionCalled());
+    }
+
+    @Test
+    public void testClasspathBundle() throws Exception {
+        assertEquals(true, JS.eval("io/xrails/resource.js").get("resourceBundleLoaded"));
+    }
+
+    @Test
+    public void testConcurrentCalls() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = executor.invokeAll(Collections.nCopies(32, (Callable<Boolean>)() -> {
+                boolean correct = true;
+                for (int i = 1; i <= 100; i++) {
+                    correct &= numberMultipleArgFunction(i, 2).doubleValue() == i * 2;
+                    correct &= new SimpleObject(i).numberSingleObjectArgMethod(new SimpleObject(2)).doubleValue() == i * 2;
+                }
+                return correct;
+            }));
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testLease() throws Exception {
+        try (JS.Lease lease = JS.lease()) {
+            assertEquals(lease.engine(), JS.Engine.current());
+            assertEquals(25.0, numberMultipleArgFunction(5, 5));
+            assertEquals(14.0, simpleObjectInstance().numberSingleObjectArgMethod(new SimpleObject(2)));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void testIsolates() throws Exception {
+        JS.Isolate isolate = JS.isolate();
+        assertNotEquals(JS.Engine.current(), isolate.engine());
+        stringVar("shared");
+        SimpleObject outside = simpleObjectInstance();
+        List<Number> numbers = numberArrayConst();
+        SimpleObject object;
+        try (JS.Binding binding = isolate.bind()) {
+            assertEquals(isolate.engine(), JS.Engine.current());
+            assertEquals("stringVarLiteral", stringVar());
+            stringVar("isolated");
+            assertEquals(25.0, numberMultipleArgFunction(5, 5));
+            object = new SimpleObject(2);
+            assertEquals(14.0, simpleObjectInstance().numberSingleObjectArgMethod(object));
+            assertNotEquals(outside, simpleObjectInstance());
+            assertNotSame(numbers, numberArrayConst());
+        }
+        assertEquals(outside, simpleObjectInstance());
+        assertSame(numbers, numberArrayConst());
+        assertEquals("shared", stringVar());
+        assertEquals(4.0, object.numberSingleObjectArgMethod(object));
+        try {
+            object.numberSingleObjectArgMethod(new SimpleObject(3));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try (JS.Binding binding = isolate.bind()) {
+            assertEquals("isolated", stringVar());
+        }
+    }
+
+    @Test
+    public void testDeferredModules() throws Exception {
+        JS.Mirror missing = JS.module("missing.js");
+        assertSame(missing, JS.module("missing.js"));
+        try {
+            missing.get("anything");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
     @Test
     public void testConstTypes() throws Exception {
         assertFalse(booleanConst());
@@ -131,6 +286,277 @@ public class SrcTest {
         assertEquals(Arrays.asList(1, null, 3), numberOrNullArrayConst());
     }
 
+    @Test
+    public void testArrayBulkOperations() throws Exception {
+        assertArrayEquals(new Object[] {1, null, 3}, numberOrNullArrayConst().toArray());
+        assertArrayEquals(new Number[] {1, 2, 3}, numberArrayConst().toArray(new Number[0]));
+
+        List<String> strings = new ArrayList<>();
+        stringArrayArrayConst().forEach(strings::addAll);
+        assertEquals(Arrays.asList("1", "2", "3", "4", "5", "6", "7", "8", "9"), strings);
+
+        assumeFalse(JS.snapshots);
+        Object[] copy = new Object[3];
+        ((JS.Array<Number>)numberArrayConst()).copyInto(copy);
+        assertArrayEquals(new Object[] {1, 2, 3}, copy);
+
+        List<List<String>> snapshot = ((JS.Array<List<String>>)stringArrayArrayConst()).snapshot();
+        assertEquals(stringArrayArrayConst(), snapshot);
+        try {
+            snapshot.set(0, Collections.emptyList());
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        stringArrayArrayVar(snapshot);
+        assertEquals(stringArrayArrayConst(), stringArrayArrayVar());
+    }
+
+    @Test
+    public void testText() throws Exception {
+        try {
+            Src.class.getMethod("stringNoArgFunctionText");
+            fail();
+        } catch (NoSuchMethodException expected) {
+        }
+
+        JS.Text text = repeatedStringText("0123456789", 10000);
+        assertEquals(100000, text.length());
+        assertEquals('5', text.charAt(99995));
+        assertEquals("89012", text.subSequence(65538, 65543).toString());
+        assertEquals(repeatedString("0123456789", 10000), text.toString());
+
+        StringBuilder read = new StringBuilder();
+        char[] buffer = new char[4096];
+        try (Reader reader = text.subSequence(5, 70005).reader()) {
+            for(int n; (n = reader.read(buffer)) != -1; ) {
+                read.append(buffer, 0, n);
+            }
+        }
+        assertEquals(text.toString().substring(5, 70005), read.toString());
+    }
+
+    @Test
+    public void testFootprint() throws Exception {
+        SimpleObject object = new SimpleObject(3);
+        numberArrayVar(Arrays.asList(1, 2));
+        JS.Footprint footprint = JS.footprint();
+        assertThat(footprint.wrappers().get(SimpleObject.class.getName()), is(not(nullValue())));
+        assertTrue(footprint.arrayMirrors() > 0);
+        assertTrue(footprint.heapEntries() >= footprint.staleEntries() + footprint.wrappers().values().stream().mapToInt(Integer::intValue).sum());
+        assertFalse(footprint.globalProperties().isEmpty());
+        assertTrue(footprint.globalProperties().get(0) > 0);
+        assertThat(footprint.toString(), containsString(SimpleObject.class.getName()));
+        assertEquals(9.0, object.numberSingleObjectArgMethod(object));
+
+        List<Number> array = (List<Number>)batch().call("Array", 1, 2).run().get(0);
+        int entries = JS.footprint().heapEntries();
+        double sum = 0;
+        for (int i = 0; i < 100; i++) {
+            for (Number number : array) {
+                sum += number.doubleValue();
+            }
+        }
+        assertEquals(300.0, sum, 0);
+        assertTrue(JS.footprint().heapEntries() < entries + 100);
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void testReceiverEngine() throws Exception {
+        SimpleObject object = new SimpleObject(2);
+        JS.Engine engine = JS.Engine.current();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Map<String, Object> map = (Map<String, Object>)executor.submit(object::upcastThisToObject).get(30, TimeUnit.SECONDS);
+            assertNotNull(JS.heap.get(map, engine));
+            assertEquals(2.0, ((Number)map.get("value")).doubleValue(), 0);
+        } finally {
+            executor.shutdown();
+        }
+
+        JS.Isolate isolate = JS.isolate();
+        SimpleObject isolated;
+        try (JS.Binding binding = isolate.bind()) {
+            isolated = new SimpleObject(3);
+        }
+        Map<String, Object> map = (Map<String, Object>)isolated.upcastThisToObject();
+        assertNotNull(JS.heap.get(map, isolate.engine()));
+        assertTrue(map.containsKey("value"));
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void testScope() throws Exception {
+        SimpleObject outside = new SimpleObject(2);
+        SimpleObject inside;
+        List<Number> list = Arrays.asList(1, 2);
+        try (JS.Scope scope = JS.scope()) {
+            inside = new SimpleObject(3);
+            numberArrayVar(list);
+            assertEquals(6.0, inside.numberSingleObjectArgMethod(outside));
+            assertNotNull(JS.heap.get(inside));
+            assertNotNull(JS.heap.get(list));
+        }
+        assertNull(JS.heap.get(inside));
+        assertNull(JS.heap.get(list));
+        assertNotNull(JS.heap.get(outside));
+        try {
+            inside.numberSingleObjectArgMethod(outside);
+            fail();
+        } catch (IllegalStateException expected) {
+            assertEquals("released", expected.getMessage());
+        }
+        try {
+            outside.numberSingleObjectArgMethod(inside);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            batch().call("Object.keys", inside).run();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        Map<String, Object> map = null;
+        try (JS.Scope scope = JS.scope()) {
+            map = (Map<String, Object>)outside.upcastThisToObject();
+            throwSpecialError();
+            fail();
+        } catch (SpecialException e) {
+            assertEquals("Special error message", e.message());
+        }
+        try {
+            map.size();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        try (JS.Binding binding = JS.isolate().bind()) {
+            List<Number> numbers;
+            try (JS.Scope scope = JS.scope()) {
+                numbers = numberArrayConst();
+            }
+            assertNotNull(JS.heap.get(numbers));
+            numberArrayVar(numbers);
+            assertEquals(numberArrayConst(), numberArrayVar());
+        }
+    }
+
+    @Test
+    public void testPreload() throws Exception {
+        numberVar(42);
+        SimpleObject instance = simpleObjectInstance();
+        JS.preload("src.js").get(30, TimeUnit.SECONDS);
+        assertEquals(42, numberVar().intValue());
+        assertEquals(instance, simpleObjectInstance());
+
+        AtomicInteger calls = new AtomicInteger();
+        JS.preload("src.js", () -> {
+            assertEquals(6.0, numberMultipleArgFunction(2, 3).doubleValue(), 0);
+            calls.incrementAndGet();
+        }, 100).get(30, TimeUnit.SECONDS);
+        assertEquals(0, calls.get() % 100);
+        assertTrue(calls.get() > 0);
+
+        try {
+            JS.preload("missing.js").get(30, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+        }
+    }
+
+    @Test
+    public void testArrayStreams() throws Exception {
+        String json = IntStream.range(0, 10000).mapToObj(String::valueOf).collect(Collectors.joining(",", "[", "]"));
+        List<Number> array = (List<Number>)batch().call("JSON.parse", json).run().get(0);
+        assertEquals(49995000L, array.stream().mapToLong(Number::longValue).sum());
+        assertEquals(49995000L, array.parallelStream().mapToLong(Number::longValue).sum());
+        assertEquals(IntStream.range(0, 10000).boxed().collect(Collectors.toList()), array.parallelStream().map(Number::intValue).collect(Collectors.toList()));
+        assertEquals(10000, array.spliterator().getExactSizeIfKnown());
+    }
+
+    @Test
+    public void testByteBuffers() throws Exception {
+        ByteBuffer bytes = ByteBuffer.allocateDirect(8);
+        bytes.put(0, (byte)200).put(7, (byte)1);
+        bytes.position(4);
+        ByteBuffer inverted = invertedBytes(bytes);
+        assertEquals(4, inverted.remaining());
+        assertEquals(200, bytes.get(0) & 0xff);
+        assertEquals(255, bytes.get(4) & 0xff);
+        assertEquals(254, bytes.get(7) & 0xff);
+        inverted.put(3, (byte)9);
+        assertEquals(9, bytes.get(7));
+
+        ByteBuffer range = byteRange(300);
+        assertEquals(300, range.remaining());
+        assertEquals(0, range.get(0));
+        assertEquals(299 & 0xff, range.get(299) & 0xff);
+    }
+
+    @Test
+    public void testClone() throws Exception {
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("value", 7);
+        expected.put("methodToOverrideCalled", false);
+        Object clone = JS.clone(anyObjectInstance());
+        assertThat(clone, instanceOf(HashMap.class));
+        assertEquals(expected, clone);
+
+        Map<String, Object> graph = new HashMap<>();
+        graph.put("text", "line\n\"quoted\" \u00e9");
+        graph.put("numbers", Arrays.asList(1, 2.5, -3e20, null));
+        graph.put("nested", Collections.singletonMap("flag", true));
+        graph.put("empty", Collections.emptyList());
+        Object transferred = JS.transfer(graph);
+        assertThat(transferred, instanceOf(JS.Object.class));
+        anyVar(transferred);
+        assertEquals("line\n\"quoted\" \u00e9", ((Map<?, ?>)anyVar()).get("text"));
+        assertEquals(graph, JS.clone(anyVar()));
+        assertEquals(Arrays.asList(1, 2, 3), JS.clone(JS.transfer(new Object[] {1, 2, 3})));
+        assertEquals("primitive", JS.clone("primitive"));
+
+        List<Object> shared = Arrays.asList(1, 2);
+        assertEquals(Arrays.asList(shared, shared), JS.clone(JS.transfer(Arrays.asList(shared, shared))));
+        Map<String, Object> cyclic = new HashMap<>();
+        cyclic.put("self", cyclic);
+        try {
+            JS.transfer(cyclic);
+            fail();
+        } catch (IllegalArgumentException cycle) {
+        }
+        ScriptObjectMirror self = (ScriptObjectMirror)batch().call("Function", "var o = { value: 1 }; o.self = o; return o;").run().get(0);
+        try {
+            JS.clone(JS.Engine.current().invoke(self, null));
+            fail();
+        } catch (IllegalArgumentException cycle) {
+        }
+        assertEquals(expected, JS.clone(anyObjectInstance()));
+    }
+
+    @Test
+    public void testFrozenConsts() throws Exception {
+        assertSame(numberArrayConst(), numberArrayConst());
+        assertThat(numberArrayConst(), instanceOf(JS.Array.class));
+        try {
+            stringArrayArrayConst().get(0).set(0, "0");
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+        assertEquals(Arrays.asList(1, 2, 3), ForkJoinPool.commonPool().submit(() -> numberArrayConst()).get());
+    }
+
+    @Test
+    public void testPrimitiveNumberArrays() throws Exception {
+        assertArrayEquals(new double[] {1, 2, 3}, JS.doubles(numberArrayConst()), 0);
+        assertArrayEquals(new double[] {4, 5}, JS.doubles(Arrays.asList(4, 5.0)), 0);
+
+        numberArrayVar(JS.numbers(new double[] {1.5, 2.5}));
+        assertEquals(Arrays.asList(1.5, 2.5), numberArrayVar());
+        assertArrayEquals(new double[] {1.5, 2.5}, JS.doubles(numberArrayVar()), 0);
+    }
+
     @Test
     public void testOptionalConstTypes() throws Exception {
         assertFalse(optionalBooleanConst().isPresent());
@@ -224,6 +650,105 @@ public class SrcTest {
         assertThat(map.get("value"), is(7));
     }
 
+    @Test
+    public void testAnyObjectMapView() throws Exception {
+        JS.Object map = (JS.Object)anyObjectInstance();
+        assertTrue(map.containsKey("value"));
+        assertFalse(map.containsKey("numberSingleObjectArgMethod"));
+        assertFalse(map.containsKey("missing"));
+        assertNull(map.get("methodToOverride"));
+        assertNull(map.get("constructor"));
+        assertEquals(new HashSet<>(Arrays.asList("value", "methodToOverrideCalled")), map.keySet());
+
+        simpleObjectInstance().methodToOverride();
+        assertThat(map.get("methodToOverrideCalled"), is(true));
+        assertThat(map.entrySet().size(), is(2));
+
+        map.invalidate();
+        assertThat(map, is(anyObjectInstance()));
+        assertThat(map.values(), hasItem(true));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        numberMultipleArgFunction(1, 2);
+        new SimpleObject().callOverriddenMethod();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if(!JS.metrics) {
+            assertTrue(server.queryNames(new ObjectName("io.xrails:type=JS,*"), null).isEmpty());
+            return;
+        }
+        ObjectName function = new ObjectName("io.xrails:type=JS,bundle=\"src.js\",name=\"numberMultipleArgFunction\"");
+        ObjectName method = new ObjectName("io.xrails:type=JS,bundle=\"src.js\",name=\"SimpleObject.prototype.callOverriddenMethod\"");
+        assertTrue((Long)server.getAttribute(function, "Calls") > 0);
+        assertTrue((Long)server.getAttribute(method, "Calls") > 0);
+        assertTrue(Arrays.stream((long[])server.getAttribute(method, "LatencyHistogram")).sum() > 0);
+    }
+
+    @Test
+    public void testPromise() throws Exception {
+        assertEquals(3, delayedNumber(3, 10).get(5, TimeUnit.SECONDS).intValue());
+        List<CompletableFuture<Number>> futures = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            futures.add(delayedNumber(i, 50));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        assertEquals(99, futures.get(99).get().intValue());
+        assertEquals(3, delayedNumber(1, 0).thenApply(x -> delayedNumber(2, 10).join().intValue() + x.intValue()).get(5, TimeUnit.SECONDS).intValue());
+        try {
+            delayedNumber(-1, 0).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(JS.RejectionException.class));
+            assertEquals("Negative value", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void testBatch() throws Exception {
+        SimpleObject object = new SimpleObject(4);
+        List<Object> results = batch()
+                .set("numberVar", 5)
+                .get("numberVar")
+                .call("numberMultipleArgFunction", 2, 3)
+                .call("SimpleObject.staticVoidNoArgMethod")
+                .get("SimpleObject.staticVoidNoArgMethodCalled")
+                .set("numberArrayVar", Arrays.asList(1, 2))
+                .get("numberArrayVar")
+                .set("optionalAnyObjectInstance", object)
+                .call("optionalAnyObjectInstance.numberSingleObjectArgMethod", new SimpleObject(2))
+                .get("anyObjectInstance")
+                .run();
+        assertNull(results.get(0));
+        assertEquals(5, ((Number)results.get(1)).intValue());
+        assertEquals(6, ((Number)results.get(2)).intValue());
+        assertEquals(true, results.get(4));
+        assertEquals(Arrays.asList(1, 2), results.get(6));
+        assertEquals(8, ((Number)results.get(8)).intValue());
+        assertEquals(anyObjectInstance(), results.get(9));
+        assertEquals(object, optionalAnyObjectInstance().get());
+
+        SimpleObject isolated;
+        try (JS.Binding binding = JS.isolate().bind()) {
+            isolated = new SimpleObject(3);
+        }
+        try {
+            batch().set("optionalAnyObjectInstance", isolated).run();
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        List<Object> array;
+        try (JS.Scope scope = JS.scope()) {
+            array = (List<Object>)batch().call("Array", 1, 2).run().get(0);
+        }
+        try {
+            batch().set("numberArrayVar", array).run();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
 //    @Test
 //    public void testInterfaceMapConformance() throws Exception {
 //        assertThat(simpleInterfaceInstance(), instanceOf(Map.class));
@@ -286,6 +811,22 @@ public class SrcTest {
         assertNull(ref.get());
     }
 
+    @Test
+    public void testArrayMirrorDeallocation() throws Exception {
+        List<Number> o = new ArrayList<>(Arrays.asList(1, 2, 3));
+        WeakReference ref = new WeakReference<>(o);
+        numberArrayVar(o);
+        o = null;
+        System.gc();
+        System.runFinalization();
+        assertNotNull(ref.get());
+        assertEquals(Arrays.asList(1, 2, 3), numberArrayVar());
+        numberArrayVar(Collections.emptyList());
+        System.gc();
+        System.runFinalization();
+        assertNull(ref.get());
+    }
+
     @Test
     public void testJSSideInterfaceDeallocation() throws Exception {
         SimpleInterface so = simpleInterfaceInstance();
@@ -0,0 +1 @@
+var resourceBundleLoaded = true;
@@ -80,4 +80,20 @@ public func throwSpecialError() throws {
     } catch let error as JSError {
         throw SpecialError(error.exception)
     }
+}
+
+public func delayedNumber(value: Double, delay: Double) -> Any {
+    return try! this[.delayedNumber](this.valueOf(value), this.valueOf(delay)).infer()
+}
+
+public func repeatedString(text: String, count: Double) -> String {
+    return String(try! this[.repeatedString](this.valueOf(text), this.valueOf(count)))
+}
+
+public func invertedBytes(bytes: Any) -> Any {
+    return try! this[.invertedBytes](this.valueOf(bytes)).infer()
+}
+
+public func byteRange(count: Double) -> Any {
+    return try! this[.byteRange](this.valueOf(count)).infer()
 }
\ No newline at end of file
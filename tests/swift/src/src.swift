@@ -37,6 +37,10 @@ extension JSProperty {
     static let SpecialError: JSProperty = "SpecialError"
     static let message: JSProperty = "message"
     static let throwSpecialError: JSProperty = "throwSpecialError"
+    static let delayedNumber: JSProperty = "delayedNumber"
+    static let repeatedString: JSProperty = "repeatedString"
+    static let invertedBytes: JSProperty = "invertedBytes"
+    static let byteRange: JSProperty = "byteRange"
     static let SimpleObject: JSProperty = "SimpleObject"
     static let staticVoidNoArgMethodCalled: JSProperty = "staticVoidNoArgMethodCalled"
     static let methodToOverrideCalled: JSProperty = "methodToOverrideCalled"